@@ -0,0 +1,84 @@
+package com.github.hlvx.dao.benchmarks;
+
+import com.github.hlvx.dao.database.sql.ColumnarResult;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Numeric heavy query read as a ResultSet or as a ColumnarResult: createDao, SELECT of rows rows, sum of the amounts
+ * per category, close. Run with -prof gc to compare the allocations of both representations
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class ColumnarBenchmark {
+    @Param({"1", "8"})
+    public int concurrency;
+
+    @Param({"1000", "20000"})
+    public int rows;
+
+    @Benchmark
+    public void resultSetRows(Database database, Blackhole blackhole) throws Exception {
+        database.await(concurrency, done -> database.manager.createDao(SamplesDao.class, dao -> {
+            if (dao.failed()) {
+                done.handle(dao);
+                return;
+            }
+            dao.result().findRange(result -> {
+                dao.result().close();
+                if (result.failed()) {
+                    done.handle(result);
+                    return;
+                }
+                double[] sums = new double[Database.CATEGORIES];
+                for (JsonArray row : result.result().getResults()) {
+                    String category = row.getString(3);
+                    sums[Integer.parseInt(category.substring(8))] += row.getDouble(2);
+                }
+                blackhole.consume(sums);
+                done.handle(Future.succeededFuture());
+            }, 0, rows);
+        }));
+    }
+
+    @Benchmark
+    public void columnarRows(Database database, Blackhole blackhole) throws Exception {
+        database.await(concurrency, done -> database.manager.createDao(SamplesDao.class, dao -> {
+            if (dao.failed()) {
+                done.handle(dao);
+                return;
+            }
+            dao.result().findRangeColumnar(result -> {
+                dao.result().close();
+                if (result.failed()) {
+                    done.handle(result);
+                    return;
+                }
+                ColumnarResult columns = result.result();
+                double[] amounts = columns.getDoubles(2);
+                int[] codes = columns.getCodes(3);
+                double[] sums = new double[columns.getDictionary(3).size()];
+                for (int row = 0; row < columns.getRowCount(); ++row) sums[codes[row]] += amounts[row];
+                blackhole.consume(sums);
+                done.handle(Future.succeededFuture());
+            }, 0, rows);
+        }));
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.hlvx.dao.benchmarks;
+
+import com.github.hlvx.dao.database.sql.SQLSession;
+import io.vertx.core.Future;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of acquiring and releasing DAOs
+ * Each invocation runs concurrency createDao/close cycles in parallel and waits for all of them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class DaoManagerBenchmark {
+    @Param({"1", "8", "32"})
+    public int concurrency;
+
+    /**
+     * A session opened for the whole trial
+     */
+    @State(Scope.Benchmark)
+    public static class OpenSession {
+        private Database database;
+        private SQLSession session;
+
+        @Setup(Level.Trial)
+        public void setUp(Database database) throws Exception {
+            this.database = database;
+            CountDownLatch latch = new CountDownLatch(1);
+            database.context.runOnContext(v -> database.manager.createSession(result -> {
+                session = result.result();
+                latch.countDown();
+            }));
+            latch.await(30, TimeUnit.SECONDS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            database.context.runOnContext(v -> session.close());
+        }
+    }
+
+    /**
+     * DAO pool borrow/return only, the DAO uses an already opened session
+     */
+    @Benchmark
+    public void createDaoOnSession(Database database, OpenSession openSession) throws Exception {
+        database.await(concurrency, done -> database.manager.createDao(openSession.session, UsersDao.class, dao -> {
+            if (dao.succeeded()) dao.result().close();
+            done.handle(dao.mapEmpty());
+        }));
+    }
+
+    /**
+     * DAO pool borrow/return plus the acquisition and release of a JDBC connection
+     */
+    @Benchmark
+    public void createDaoAndClose(Database database) throws Exception {
+        database.await(concurrency, done -> database.manager.createDao(UsersDao.class, dao -> {
+            if (dao.succeeded()) dao.result().close();
+            done.handle(dao.mapEmpty());
+        }));
+    }
+
+    /**
+     * Session creation through the manager, without any DAO
+     */
+    @Benchmark
+    public void createSessionAndClose(Database database) throws Exception {
+        database.await(concurrency, done -> database.manager.createSession(result -> {
+            if (result.succeeded()) result.result().close();
+            done.handle(result.failed() ? Future.failedFuture(result.cause()) : Future.succeededFuture());
+        }));
+    }
+}
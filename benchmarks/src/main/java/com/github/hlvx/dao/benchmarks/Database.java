@@ -0,0 +1,99 @@
+package com.github.hlvx.dao.benchmarks;
+
+import com.github.hlvx.dao.database.sql.DaoManager;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.JDBCClient;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * In-memory HSQLDB database shared by all benchmarks, configured like src/test/java/Example.java
+ */
+@State(Scope.Benchmark)
+public class Database {
+    public static final int USERS = 1000;
+    public static final int SAMPLES = 20000;
+    public static final int CATEGORIES = 16;
+    public Vertx vertx;
+    public Context context;
+    public JDBCClient client;
+    public DaoManager manager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        context = vertx.getOrCreateContext();
+        JsonObject config = new JsonObject()
+                .put("url", "jdbc:hsqldb:mem:benchmarks")
+                .put("driver_class", "org.hsqldb.jdbcDriver")
+                .put("max_pool_size", 30);
+        client = JDBCClient.createShared(vertx, config);
+        manager = new DaoManager(client);
+        manager.registerDao(UsersDao.class);
+        manager.registerDao(SamplesDao.class);
+
+        await(1, done -> client.update("DROP TABLE users IF EXISTS", dropped ->
+                client.update("CREATE TABLE users (id INT IDENTITY PRIMARY KEY, username VARCHAR(64), email VARCHAR(128))", done::handle)));
+        List<JsonArray> rows = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; ++i) rows.add(new JsonArray().add("user" + i).add("user" + i + "@example.com"));
+        await(1, done -> client.getConnection(connection -> connection.result().batchWithParams(
+                "INSERT INTO users (username, email) VALUES (?, ?)", rows, result -> {
+                    connection.result().close();
+                    done.handle(result);
+                })));
+
+        await(1, done -> client.update("DROP TABLE samples IF EXISTS", dropped ->
+                client.update("CREATE TABLE samples (id BIGINT PRIMARY KEY, user_id INT, amount DOUBLE, category VARCHAR(32))", done::handle)));
+        List<JsonArray> samples = new ArrayList<>(SAMPLES);
+        for (int i = 0; i < SAMPLES; ++i) {
+            samples.add(new JsonArray().add((long) i).add(i % USERS).add(i * 0.25).add("category" + i % CATEGORIES));
+        }
+        await(1, done -> client.getConnection(connection -> connection.result().batchWithParams(
+                "INSERT INTO samples (id, user_id, amount, category) VALUES (?, ?, ?, ?)", samples, result -> {
+                    connection.result().close();
+                    done.handle(result);
+                })));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        client.close(closed -> vertx.close(v -> latch.countDown()));
+        latch.await(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts concurrency operations on the benchmark context and waits for all of them to complete
+     * @param concurrency The number of operations in flight at the same time
+     * @param operation The operation, it must call the given handler once done
+     */
+    public void await(int concurrency, Consumer<Handler<AsyncResult<?>>> operation) throws Exception {
+        CountDownLatch latch = new CountDownLatch(concurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        context.runOnContext(v -> {
+            for (int i = 0; i < concurrency; ++i) {
+                operation.accept(result -> {
+                    if (result.failed()) failure.compareAndSet(null, result.cause());
+                    latch.countDown();
+                });
+            }
+        });
+        if (!latch.await(60, TimeUnit.SECONDS)) throw new IllegalStateException("Benchmark operations timed out");
+        if (failure.get() != null) throw new IllegalStateException(failure.get());
+    }
+}
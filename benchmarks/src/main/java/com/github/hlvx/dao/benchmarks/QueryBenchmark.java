@@ -0,0 +1,171 @@
+package com.github.hlvx.dao.benchmarks;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end cost of statements executed through a DAO: createDao, statement(s), close
+ * Each invocation runs concurrency operations in parallel and waits for all of them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class QueryBenchmark {
+    @Param({"1", "8", "32"})
+    public int concurrency;
+
+    @Param({"10"})
+    public int batchSize;
+
+    @Param({"500"})
+    public int rows;
+
+    @Benchmark
+    public void singleQuery(Database database) throws Exception {
+        database.await(concurrency, done -> database.manager.createDao(UsersDao.class, dao -> {
+            if (dao.failed()) {
+                done.handle(dao);
+                return;
+            }
+            dao.result().findById(result -> {
+                dao.result().close();
+                done.handle(result);
+            }, ThreadLocalRandom.current().nextInt(Database.USERS));
+        }));
+    }
+
+    @Benchmark
+    public void nestedQueries(Database database) throws Exception {
+        database.await(concurrency, done -> database.manager.createDao(UsersDao.class, dao -> {
+            if (dao.failed()) {
+                done.handle(dao);
+                return;
+            }
+            findNested(dao.result(), batchSize, result -> {
+                dao.result().close();
+                done.handle(result);
+            });
+        }));
+    }
+
+    private static void findNested(UsersDao dao, int remaining, Handler<AsyncResult<Void>> done) {
+        if (remaining == 0) {
+            done.handle(Future.succeededFuture());
+            return;
+        }
+        dao.findById(result -> {
+            if (result.failed()) done.handle(Future.failedFuture(result.cause()));
+            else findNested(dao, remaining - 1, done);
+        }, ThreadLocalRandom.current().nextInt(Database.USERS));
+    }
+
+    @Benchmark
+    public void pipelinedQueries(Database database) throws Exception {
+        int[] ids = new int[batchSize];
+        for (int i = 0; i < batchSize; ++i) ids[i] = ThreadLocalRandom.current().nextInt(Database.USERS);
+        database.await(concurrency, done -> database.manager.createDao(UsersDao.class, dao -> {
+            if (dao.failed()) {
+                done.handle(dao);
+                return;
+            }
+            dao.result().findAllById(result -> {
+                dao.result().close();
+                done.handle(result);
+            }, ids);
+        }));
+    }
+
+    @Benchmark
+    public void jsonRows(Database database) throws Exception {
+        database.await(concurrency, done -> database.manager.createDao(UsersDao.class, dao -> {
+            if (dao.failed()) {
+                done.handle(dao);
+                return;
+            }
+            dao.result().findRange(result -> {
+                dao.result().close();
+                if (result.succeeded()) result.result().getRows();
+                done.handle(result);
+            }, 0, rows);
+        }));
+    }
+
+    @Benchmark
+    public void mappedRows(Database database) throws Exception {
+        database.await(concurrency, done -> database.manager.createDao(UsersDao.class, dao -> {
+            if (dao.failed()) {
+                done.handle(dao);
+                return;
+            }
+            dao.result().findRangeAs(result -> {
+                dao.result().close();
+                done.handle(result);
+            }, 0, rows);
+        }));
+    }
+
+    @Benchmark
+    public void batch(Database database) throws Exception {
+        JsonArray[] rows = new JsonArray[batchSize];
+        for (int i = 0; i < batchSize; ++i) rows[i] = new JsonArray().add("batch" + i).add("batch" + i + "@example.com");
+        database.await(concurrency, done -> database.manager.createDao(UsersDao.class, dao -> {
+            if (dao.failed()) {
+                done.handle(dao);
+                return;
+            }
+            dao.result().insertAll(result -> {
+                dao.result().close();
+                done.handle(result);
+            }, rows);
+        }));
+    }
+
+    @Benchmark
+    public void transaction(Database database) throws Exception {
+        database.await(concurrency, done -> database.manager.createDao(UsersDao.class, daoResult -> {
+            if (daoResult.failed()) {
+                done.handle(daoResult);
+                return;
+            }
+            UsersDao dao = daoResult.result();
+            dao.startTransaction(started -> {
+                if (started.failed()) {
+                    dao.close();
+                    done.handle(started);
+                    return;
+                }
+                dao.insert(inserted -> {
+                    if (inserted.failed()) {
+                        dao.rollback(rolledBack -> {
+                            dao.close();
+                            done.handle(inserted);
+                        });
+                        return;
+                    }
+                    dao.commit(committed -> {
+                        dao.close();
+                        done.handle(committed.failed() ? Future.failedFuture(committed.cause()) : Future.succeededFuture());
+                    });
+                }, "transaction", "transaction@example.com");
+            });
+        }));
+    }
+}
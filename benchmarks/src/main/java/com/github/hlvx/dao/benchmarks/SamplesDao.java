@@ -0,0 +1,19 @@
+package com.github.hlvx.dao.benchmarks;
+
+import com.github.hlvx.dao.database.sql.ColumnarResult;
+import com.github.hlvx.dao.database.sql.DAO;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.sql.ResultSet;
+
+public class SamplesDao extends DAO {
+    public void findRange(Handler<AsyncResult<ResultSet>> handler, long from, int count) {
+        executeQuery(handler, "SELECT id, user_id, amount, category FROM samples WHERE id >= ? AND id < ?", from,
+                from + count);
+    }
+
+    public void findRangeColumnar(Handler<AsyncResult<ColumnarResult>> handler, long from, int count) {
+        executeQueryColumnar(handler, "SELECT id, user_id, amount, category FROM samples WHERE id >= ? AND id < ?",
+                from, from + count);
+    }
+}
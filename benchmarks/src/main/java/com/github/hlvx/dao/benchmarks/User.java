@@ -0,0 +1,7 @@
+package com.github.hlvx.dao.benchmarks;
+
+public class User {
+    public int id;
+    public String username;
+    public String email;
+}
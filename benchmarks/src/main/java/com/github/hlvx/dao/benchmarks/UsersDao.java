@@ -0,0 +1,40 @@
+package com.github.hlvx.dao.benchmarks;
+
+import com.github.hlvx.dao.database.sql.DAO;
+import com.github.hlvx.dao.database.sql.Pipeline;
+import com.github.hlvx.dao.database.sql.PipelineResult;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.UpdateResult;
+
+import java.util.List;
+
+public class UsersDao extends DAO {
+    public void findById(Handler<AsyncResult<ResultSet>> handler, int id) {
+        executeQuery(handler, "SELECT id, username, email FROM users WHERE id = ?", id);
+    }
+
+    public void findAllById(Handler<AsyncResult<PipelineResult>> handler, int... ids) {
+        Pipeline pipeline = new Pipeline();
+        for (int id : ids) pipeline.query("SELECT id, username, email FROM users WHERE id = ?", id);
+        executePipeline(handler, pipeline);
+    }
+
+    public void findRange(Handler<AsyncResult<ResultSet>> handler, int from, int count) {
+        executeQuery(handler, "SELECT id, username, email FROM users WHERE id >= ? AND id < ?", from, from + count);
+    }
+
+    public void findRangeAs(Handler<AsyncResult<List<User>>> handler, int from, int count) {
+        executeQueryAs(handler, User.class, "SELECT id, username, email FROM users WHERE id >= ? AND id < ?", from, from + count);
+    }
+
+    public void insert(Handler<AsyncResult<UpdateResult>> handler, String username, String email) {
+        executeInsert(handler, "INSERT INTO users (username, email) VALUES (?, ?)", username, email);
+    }
+
+    public void insertAll(Handler<AsyncResult<List<Integer>>> handler, JsonArray... rows) {
+        executeBatch(handler, "INSERT INTO users (username, email) VALUES (?, ?)", rows);
+    }
+}
@@ -0,0 +1,288 @@
+package com.github.hlvx.dao.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the implementation of the DAO interfaces whose methods are annotated with
+ * {@code com.github.hlvx.dao.database.sql.Query} or {@code com.github.hlvx.dao.database.sql.Update}
+ * For an interface {@code UserQueries} the class {@code UserQueriesImpl} is generated in the same package. It extends
+ * {@code DAO}, calls the DAO statement methods with the declared SQL and binds the method parameters in declaration
+ * order. Its static {@code register(DaoManager)} method registers it without reflection and declares its statements
+ * for {@code DaoManager#validateStatements}.
+ * The number of parameters of each method is checked against the placeholders of its statement at compile time, varargs
+ * methods are rejected since their number of parameters is only known at runtime
+ */
+public class DaoProcessor extends AbstractProcessor {
+    static final String QUERY = "com.github.hlvx.dao.database.sql.Query";
+    static final String UPDATE = "com.github.hlvx.dao.database.sql.Update";
+    private static final String DAO = "com.github.hlvx.dao.database.sql.DAO";
+    private static final String DAO_MANAGER = "com.github.hlvx.dao.database.sql.DaoManager";
+    private static final String HANDLER = "io.vertx.core.Handler";
+    private static final String ASYNC_RESULT = "io.vertx.core.AsyncResult";
+    private static final String RESULT_SET = "io.vertx.ext.sql.ResultSet";
+    private static final String UPDATE_RESULT = "io.vertx.ext.sql.UpdateResult";
+    private Types types;
+    private Elements elements;
+    private Filer filer;
+    private Messager messager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        types = processingEnv.getTypeUtils();
+        elements = processingEnv.getElementUtils();
+        filer = processingEnv.getFiler();
+        messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(QUERY, UPDATE));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> interfaces = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                Element owner = element.getEnclosingElement();
+                if (owner.getKind() != ElementKind.INTERFACE) {
+                    error(element, "@Query and @Update methods must be declared in an interface");
+                    continue;
+                }
+                interfaces.add((TypeElement) owner);
+            }
+        }
+        for (TypeElement type : interfaces) generate(type);
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        if (!type.getTypeParameters().isEmpty()) {
+            error(type, "DAO interfaces cannot have type parameters");
+            return;
+        }
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String implName = implName(type);
+        List<String> statements = new ArrayList<>();
+        StringBuilder methods = new StringBuilder();
+        boolean valid = true;
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.DEFAULT) || method.getModifiers().contains(Modifier.STATIC))
+                continue;
+            String query = annotationValue(method, QUERY);
+            String update = annotationValue(method, UPDATE);
+            if (query == null && update == null) {
+                error(method, "Abstract DAO methods must be annotated with @Query or @Update");
+                valid = false;
+                continue;
+            }
+            if (query != null && update != null) {
+                error(method, "A DAO method cannot be annotated with both @Query and @Update");
+                valid = false;
+                continue;
+            }
+            String call = method(method, query != null ? query : update, query != null, statements.size());
+            if (call == null) {
+                valid = false;
+                continue;
+            }
+            statements.add(query != null ? query : update);
+            methods.append(call);
+        }
+        if (!valid) return;
+        String qualifiedName = packageName.isEmpty() ? implName : packageName + "." + implName;
+        try (Writer writer = filer.createSourceFile(qualifiedName, type).openWriter()) {
+            if (!packageName.isEmpty()) writer.write("package " + packageName + ";\n\n");
+            writer.write("/**\n * Generated by hlvx-dao-processor from {@link " + type.getQualifiedName() + "}, do not edit\n */\n");
+            writer.write("public class " + implName + " extends " + DAO + " implements " + type.getQualifiedName() + " {\n");
+            writer.write("    static final String[] STATEMENTS = {\n");
+            for (String statement : statements) writer.write("            " + literal(statement) + ",\n");
+            writer.write("    };\n\n");
+            writer.write("    /**\n     * Registers this DAO in a manager and declares its statements\n     * @param manager The manager\n     */\n");
+            writer.write("    public static void register(" + DAO_MANAGER + " manager) {\n");
+            writer.write("        manager.registerDao(" + implName + ".class, " + implName + "::new);\n");
+            writer.write("        manager.declareStatements(" + implName + ".class, STATEMENTS);\n");
+            writer.write("    }\n");
+            writer.write(methods.toString());
+            writer.write("}\n");
+        } catch (IOException e) {
+            error(type, "Cannot generate " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The source of the implementation of a method, or null if the method is invalid
+     */
+    private String method(ExecutableElement method, String sql, boolean query, int index) {
+        if (method.isVarArgs()) {
+            error(method, "A DAO method cannot take varargs, each placeholder is bound to one parameter");
+            return null;
+        }
+        List<? extends VariableElement> parameters = method.getParameters();
+        VariableElement handler = null;
+        List<String> bound = new ArrayList<>();
+        for (VariableElement parameter : parameters) {
+            if (handler == null && isHandler(parameter.asType())) handler = parameter;
+            else bound.add(parameter.getSimpleName().toString());
+        }
+        if (handler == null) {
+            error(method, "A DAO method needs a Handler<AsyncResult<...>> parameter");
+            return null;
+        }
+        if (method.getReturnType().getKind() != TypeKind.VOID) {
+            error(method, "A DAO method must return void, its result is passed to its handler");
+            return null;
+        }
+        int placeholders = placeholders(sql);
+        if (placeholders != bound.size()) {
+            error(method, "The statement has " + placeholders + " placeholders but the method binds " + bound.size()
+                    + " parameters");
+            return null;
+        }
+        TypeMirror result = handlerResult(handler.asType());
+        String target;
+        if (!query) {
+            if (!isType(result, UPDATE_RESULT)) {
+                error(method, "An @Update method takes a Handler<AsyncResult<UpdateResult>>");
+                return null;
+            }
+            target = "executeUpdate(" + handler.getSimpleName() + ", ";
+        } else if (isType(result, RESULT_SET)) {
+            target = "executeQuery(" + handler.getSimpleName() + ", ";
+        } else if (isType(result, List.class.getName())) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) result).getTypeArguments();
+            if (arguments.size() != 1 || arguments.get(0).getKind() != TypeKind.DECLARED) {
+                error(method, "A @Query method returning a List needs the element type of the list");
+                return null;
+            }
+            target = "executeQueryAs(" + handler.getSimpleName() + ", " + types.erasure(arguments.get(0)) + ".class, ";
+        } else {
+            error(method, "A @Query method takes a Handler<AsyncResult<ResultSet>> or a Handler<AsyncResult<List<T>>>");
+            return null;
+        }
+
+        StringBuilder source = new StringBuilder("\n    @Override\n    public void ")
+                .append(method.getSimpleName()).append('(');
+        for (int i = 0; i < parameters.size(); ++i) {
+            VariableElement parameter = parameters.get(i);
+            if (i > 0) source.append(", ");
+            source.append("final ").append(parameter.asType()).append(' ').append(parameter.getSimpleName());
+        }
+        source.append(") {\n        ").append(target).append("STATEMENTS[").append(index).append("], new Object[] {");
+        source.append(String.join(", ", bound)).append("});\n    }\n");
+        return source.toString();
+    }
+
+    private boolean isHandler(TypeMirror type) {
+        return isType(type, HANDLER) && handlerResult(type) != null;
+    }
+
+    /**
+     * @return T for a Handler<AsyncResult<T>>, or null
+     */
+    private TypeMirror handlerResult(TypeMirror handler) {
+        List<? extends TypeMirror> arguments = ((DeclaredType) handler).getTypeArguments();
+        if (arguments.size() != 1 || !isType(arguments.get(0), ASYNC_RESULT)) return null;
+        List<? extends TypeMirror> results = ((DeclaredType) arguments.get(0)).getTypeArguments();
+        return results.size() == 1 ? results.get(0) : null;
+    }
+
+    private boolean isType(TypeMirror type, String name) {
+        return type != null && type.getKind() == TypeKind.DECLARED && types.erasure(type).toString().equals(name);
+    }
+
+    private static String annotationValue(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation))
+                continue;
+            for (AnnotationValue value : mirror.getElementValues().values()) return (String) value.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Counts the ? placeholders of a statement, ignoring the ones in string literals, quoted identifiers and comments
+     */
+    static int placeholders(String sql) {
+        int count = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); ++i) {
+            char c = sql.charAt(i);
+            char next = i + 1 < sql.length() ? sql.charAt(i + 1) : 0;
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '-' && next == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end;
+            } else if (c == '/' && next == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 1;
+            } else if (c == '?') {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static String implName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element owner = type.getEnclosingElement(); owner instanceof TypeElement; owner = owner.getEnclosingElement())
+            name.insert(0, owner.getSimpleName() + "_");
+        return name.append("Impl").toString();
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"': literal.append("\\\""); break;
+                case '\\': literal.append("\\\\"); break;
+                case '\n': literal.append("\\n"); break;
+                case '\r': literal.append("\\r"); break;
+                case '\t': literal.append("\\t"); break;
+                default: literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
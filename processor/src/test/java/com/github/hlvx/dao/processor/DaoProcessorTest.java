@@ -0,0 +1,253 @@
+package com.github.hlvx.dao.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DaoProcessorTest {
+    private static final String IMPORTS = "package test;\n\n"
+            + "import com.github.hlvx.dao.database.sql.Query;\n"
+            + "import com.github.hlvx.dao.database.sql.Update;\n"
+            + "import io.vertx.core.AsyncResult;\n"
+            + "import io.vertx.core.Handler;\n"
+            + "import io.vertx.ext.sql.ResultSet;\n"
+            + "import io.vertx.ext.sql.UpdateResult;\n"
+            + "import java.util.List;\n\n";
+
+    @TempDir
+    Path output;
+
+    @Test
+    public void generatesACompilingImplementation() throws Exception {
+        Compilation compilation = compile("test.UserQueries", IMPORTS
+                + "public interface UserQueries {\n"
+                + "    class User {\n"
+                + "        public int id;\n"
+                + "    }\n\n"
+                + "    @Query(\"SELECT id FROM users WHERE id = ? -- and name = ?\")\n"
+                + "    void findById(Handler<AsyncResult<List<User>>> handler, int id);\n\n"
+                + "    @Query(\"SELECT count(*) FROM users WHERE name = '?' /* ? */ AND status = ?\")\n"
+                + "    void count(String status, Handler<AsyncResult<ResultSet>> handler);\n\n"
+                + "    @Update(\"UPDATE users SET name = ? WHERE id = ?\")\n"
+                + "    void rename(Handler<AsyncResult<UpdateResult>> handler, String name, int id);\n\n"
+                + "    default void helper() {\n"
+                + "    }\n"
+                + "}\n");
+        assertTrue(compilation.success, compilation.errors.toString());
+
+        String source = compilation.generated("test/UserQueriesImpl.java");
+        assertTrue(source.contains("public class UserQueriesImpl extends com.github.hlvx.dao.database.sql.DAO "
+                + "implements test.UserQueries"), source);
+        assertTrue(source.contains("executeQueryAs(handler, test.UserQueries.User.class, STATEMENTS[0], "
+                + "new Object[] {id});"), source);
+        assertTrue(source.contains("executeQuery(handler, STATEMENTS[1], new Object[] {status});"), source);
+        assertTrue(source.contains("executeUpdate(handler, STATEMENTS[2], new Object[] {name, id});"), source);
+
+        try (URLClassLoader loader = compilation.loader()) {
+            Class<?> impl = loader.loadClass("test.UserQueriesImpl");
+            assertEquals("com.github.hlvx.dao.database.sql.DAO", impl.getSuperclass().getName());
+            assertTrue(loader.loadClass("test.UserQueries").isAssignableFrom(impl));
+            Field statements = impl.getDeclaredField("STATEMENTS");
+            statements.setAccessible(true);
+            assertArrayEquals(new String[] {
+                    "SELECT id FROM users WHERE id = ? -- and name = ?",
+                    "SELECT count(*) FROM users WHERE name = '?' /* ? */ AND status = ?",
+                    "UPDATE users SET name = ? WHERE id = ?"
+            }, (String[]) statements.get(null));
+        }
+    }
+
+    @Test
+    public void namesNestedInterfacesAfterTheirOwners() throws Exception {
+        Compilation compilation = compile("test.Outer", IMPORTS
+                + "public class Outer {\n"
+                + "    public interface Inner {\n"
+                + "        @Update(\"DELETE FROM users\")\n"
+                + "        void clear(Handler<AsyncResult<UpdateResult>> handler);\n"
+                + "    }\n"
+                + "}\n");
+        assertTrue(compilation.success, compilation.errors.toString());
+        assertTrue(compilation.generated("test/Outer_InnerImpl.java").contains("public class Outer_InnerImpl"));
+    }
+
+    @Test
+    public void countsPlaceholdersOutsideLiteralsAndComments() {
+        assertEquals(2, DaoProcessor.placeholders("SELECT * FROM t WHERE a = ? AND b = ?"));
+        assertEquals(1, DaoProcessor.placeholders("SELECT '?', \"?\" FROM t WHERE a = ?"));
+        assertEquals(1, DaoProcessor.placeholders("SELECT 'it''s ?' FROM t WHERE a = ?"));
+        assertEquals(1, DaoProcessor.placeholders("SELECT * FROM t -- where b = ?\nWHERE a = ?"));
+        assertEquals(1, DaoProcessor.placeholders("SELECT * FROM t /* b = ?\n c = ? */ WHERE a = ?"));
+        assertEquals(0, DaoProcessor.placeholders("SELECT * FROM t -- ?"));
+        assertEquals(0, DaoProcessor.placeholders("SELECT * FROM t /* ? "));
+        assertEquals(2, DaoProcessor.placeholders("SELECT 10-? / ? FROM t"));
+    }
+
+    @Test
+    public void rejectsPlaceholderCountMismatch() throws Exception {
+        assertError("The statement has 2 placeholders but the method binds 1 parameters",
+                "@Query(\"SELECT * FROM users WHERE id = ? AND name = ?\")\n"
+                        + "void find(Handler<AsyncResult<ResultSet>> handler, int id);");
+        assertError("The statement has 0 placeholders but the method binds 1 parameters",
+                "@Query(\"SELECT * FROM users -- WHERE id = ?\")\n"
+                        + "void find(Handler<AsyncResult<ResultSet>> handler, int id);");
+    }
+
+    @Test
+    public void rejectsVarargs() throws Exception {
+        assertError("A DAO method cannot take varargs, each placeholder is bound to one parameter",
+                "@Query(\"SELECT * FROM users WHERE id IN (?, ?)\")\n"
+                        + "void find(Handler<AsyncResult<ResultSet>> handler, int... ids);");
+    }
+
+    @Test
+    public void rejectsMissingHandler() throws Exception {
+        assertError("A DAO method needs a Handler<AsyncResult<...>> parameter",
+                "@Query(\"SELECT * FROM users WHERE id = ?\")\nvoid find(int id);");
+        assertError("A DAO method needs a Handler<AsyncResult<...>> parameter",
+                "@Query(\"SELECT * FROM users\")\nvoid find(Handler<ResultSet> handler);");
+    }
+
+    @Test
+    public void rejectsReturnValue() throws Exception {
+        assertError("A DAO method must return void, its result is passed to its handler",
+                "@Query(\"SELECT * FROM users\")\nint find(Handler<AsyncResult<ResultSet>> handler);");
+    }
+
+    @Test
+    public void rejectsUnsupportedHandlerTypes() throws Exception {
+        assertError("An @Update method takes a Handler<AsyncResult<UpdateResult>>",
+                "@Update(\"DELETE FROM users\")\nvoid clear(Handler<AsyncResult<ResultSet>> handler);");
+        assertError("A @Query method takes a Handler<AsyncResult<ResultSet>> or a Handler<AsyncResult<List<T>>>",
+                "@Query(\"SELECT name FROM users\")\nvoid names(Handler<AsyncResult<String>> handler);");
+        assertError("A @Query method returning a List needs the element type of the list",
+                "@Query(\"SELECT name FROM users\")\nvoid names(Handler<AsyncResult<List<?>>> handler);");
+    }
+
+    @Test
+    public void rejectsInvalidDeclarations() throws Exception {
+        assertError("A DAO method cannot be annotated with both @Query and @Update",
+                "@Query(\"SELECT * FROM users\")\n@Update(\"DELETE FROM users\")\n"
+                        + "void both(Handler<AsyncResult<ResultSet>> handler);");
+        assertError("Abstract DAO methods must be annotated with @Query or @Update",
+                "@Update(\"DELETE FROM users\")\nvoid clear(Handler<AsyncResult<UpdateResult>> handler);\n"
+                        + "void other(Handler<AsyncResult<UpdateResult>> handler);");
+
+        Compilation generic = compile("test.UserQueries", IMPORTS
+                + "public interface UserQueries<T> {\n"
+                + "    @Update(\"DELETE FROM users\")\n"
+                + "    void clear(Handler<AsyncResult<UpdateResult>> handler);\n"
+                + "}\n");
+        assertEquals(Collections.singletonList("DAO interfaces cannot have type parameters"), generic.errors);
+
+        Compilation notInterface = compile("test.UserQueries", IMPORTS
+                + "public abstract class UserQueries {\n"
+                + "    @Update(\"DELETE FROM users\")\n"
+                + "    abstract void clear(Handler<AsyncResult<UpdateResult>> handler);\n"
+                + "}\n");
+        assertEquals(Collections.singletonList("@Query and @Update methods must be declared in an interface"),
+                notInterface.errors);
+    }
+
+    /**
+     * Compiles an interface declaring the given methods and checks it fails with a single error
+     */
+    private void assertError(String error, String methods) throws Exception {
+        Compilation compilation = compile("test.UserQueries", IMPORTS
+                + "public interface UserQueries {\n" + methods + "\n}\n");
+        assertEquals(Collections.singletonList(error), compilation.errors);
+        assertFalse(Files.exists(output.resolve("sources/test/UserQueriesImpl.java")));
+    }
+
+    private Compilation compile(String className, String source) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Path classes = Files.createDirectories(output.resolve("classes"));
+        Path sources = Files.createDirectories(output.resolve("sources"));
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            files.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(classes.toFile()));
+            files.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(sources.toFile()));
+            JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/')
+                    + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-proc:only");
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, options, null,
+                    Collections.singletonList(file));
+            task.setProcessors(Collections.singletonList(new DaoProcessor()));
+            boolean processed = task.call();
+            List<String> errors = errors(diagnostics);
+            if (!processed || !errors.isEmpty()) return new Compilation(false, errors, sources, classes);
+
+            // Compiles the interface with the generated sources, the processor does not run again
+            List<File> generated = new ArrayList<>();
+            try (Stream<Path> paths = Files.walk(sources)) {
+                paths.filter(Files::isRegularFile).forEach(path -> generated.add(path.toFile()));
+            }
+            List<JavaFileObject> units = new ArrayList<>();
+            units.add(file);
+            files.getJavaFileObjectsFromFiles(generated).forEach(units::add);
+            DiagnosticCollector<JavaFileObject> compileDiagnostics = new DiagnosticCollector<>();
+            options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-proc:none");
+            boolean compiled = compiler.getTask(null, files, compileDiagnostics, options, null, units).call();
+            return new Compilation(compiled, errors(compileDiagnostics), sources, classes);
+        }
+    }
+
+    private static List<String> errors(DiagnosticCollector<JavaFileObject> diagnostics) {
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) errors.add(diagnostic.getMessage(null));
+        return errors;
+    }
+
+    private static class Compilation {
+        private final boolean success;
+        private final List<String> errors;
+        private final Path sources;
+        private final Path classes;
+
+        private Compilation(boolean success, List<String> errors, Path sources, Path classes) {
+            this.success = success;
+            this.errors = errors;
+            this.sources = sources;
+            this.classes = classes;
+        }
+
+        private String generated(String path) throws Exception {
+            return new String(Files.readAllBytes(sources.resolve(path)), StandardCharsets.UTF_8);
+        }
+
+        private URLClassLoader loader() throws Exception {
+            return new URLClassLoader(new URL[] {classes.toUri().toURL()}, getClass().getClassLoader());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.hlvx.dao.database.sql;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the progress of a {@link BulkLoader}
+ */
+public class BulkLoadProgress {
+    private final long rows;
+    private final long chunks;
+    private final long elapsedNanos;
+    private final int chunkSize;
+
+    BulkLoadProgress(long rows, long chunks, long elapsedNanos, int chunkSize) {
+        this.rows = rows;
+        this.chunks = chunks;
+        this.elapsedNanos = elapsedNanos;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return The number of rows loaded
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The number of chunks executed
+     */
+    public long getChunks() {
+        return chunks;
+    }
+
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The average number of rows loaded per second since the beginning of the load
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return The current size of the chunks
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public String toString() {
+        return rows + " rows in " + chunks + " chunks, " + Math.round(getRowsPerSecond()) + " rows/s";
+    }
+}
@@ -0,0 +1,326 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a large number of rows with one statement, split in JDBC batches executed on several sessions in parallel
+ * Rows are read from a {@link ReadStream} or an {@link Iterator} as the chunks are executed, so only the chunks
+ * being executed are kept in memory. The size of the chunks adapts so that each chunk takes about the target
+ * duration, between the minimum and maximum sizes.
+ * The cached query results of the loaded table are invalidated after each chunk, see
+ * {@link DaoManager#setQueryCache(long, long, TimeUnit)}.
+ * A loader must be used from a Vert.x context, see {@link DaoManager#createBulkLoader(String)}
+ */
+public class BulkLoader {
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoader.class);
+    private final DaoManager manager;
+    private final String query;
+    private int parallelism = 4;
+    private int minChunkSize = 100;
+    private int maxChunkSize = 10_000;
+    private int initialChunkSize = 1000;
+    private long targetChunkNanos = TimeUnit.MILLISECONDS.toNanos(500);
+    private boolean transactional = false;
+    private Handler<BulkLoadProgress> progressHandler;
+
+    BulkLoader(DaoManager manager, String query) {
+        this.manager = manager;
+        this.query = query;
+    }
+
+    /**
+     * @param parallelism The number of sessions executing chunks at the same time, 4 by default
+     * @return This loader
+     */
+    public BulkLoader setParallelism(int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("Parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param min The minimum number of rows of a chunk, 100 by default
+     * @param initial The number of rows of the first chunks, 1000 by default
+     * @param max The maximum number of rows of a chunk, 10000 by default
+     * @return This loader
+     */
+    public BulkLoader setChunkSize(int min, int initial, int max) {
+        if (min <= 0 || initial < min || max < initial)
+            throw new IllegalArgumentException("Chunk sizes must be positive and min <= initial <= max");
+        this.minChunkSize = min;
+        this.initialChunkSize = initial;
+        this.maxChunkSize = max;
+        return this;
+    }
+
+    /**
+     * @param duration The duration a chunk should take, chunk sizes grow or shrink towards it, 500ms by default
+     * @param unit The time unit of duration
+     * @return This loader
+     */
+    public BulkLoader setTargetChunkTime(long duration, TimeUnit unit) {
+        this.targetChunkNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * @param transactional true to execute each chunk in its own transaction, committed once the chunk is executed.
+     *                      A failed chunk is rolled back, the chunks committed before stay in the database
+     * @return This loader
+     */
+    public BulkLoader setTransactional(boolean transactional) {
+        this.transactional = transactional;
+        return this;
+    }
+
+    /**
+     * @param handler The handler called after each chunk with the progress of the load
+     * @return This loader
+     */
+    public BulkLoader setProgressHandler(Handler<BulkLoadProgress> handler) {
+        this.progressHandler = handler;
+        return this;
+    }
+
+    /**
+     * Loads every row of a stream, the stream is paused while enough rows are waiting for a session
+     * A failure of the stream stops the load, the rows it buffered and no chunk has taken yet are not loaded
+     * @param rows The rows, each one holding the parameters of the statement
+     * @param handler The handler called with the final progress once every row is loaded, or with the first failure
+     */
+    public void load(ReadStream<JsonArray> rows, Handler<AsyncResult<BulkLoadProgress>> handler) {
+        new Load(new StreamSource(rows, parallelism * maxChunkSize), handler).start();
+    }
+
+    /**
+     * Loads every row of an iterator, rows are pulled on the event loop when a session is ready for a new chunk
+     * @param rows The rows, each one holding the parameters of the statement
+     * @param handler The handler called with the final progress once every row is loaded, or with the first failure
+     */
+    public void load(Iterator<JsonArray> rows, Handler<AsyncResult<BulkLoadProgress>> handler) {
+        new Load((count, consumer) -> {
+            List<JsonArray> chunk = new ArrayList<>(count);
+            while (chunk.size() < count && rows.hasNext()) chunk.add(rows.next());
+            consumer.handle(chunk);
+        }, handler).start();
+    }
+
+    @FunctionalInterface
+    private interface Source {
+        /**
+         * Calls the consumer with the next rows, fewer than count only at the end of the source and none once it is
+         * exhausted
+         */
+        void take(int count, Handler<List<JsonArray>> consumer);
+
+        /**
+         * @return The failure that ended the source early, or null
+         */
+        default Throwable failure() {
+            return null;
+        }
+    }
+
+    /**
+     * One execution of the loader
+     */
+    private class Load {
+        private final Source source;
+        private final Handler<AsyncResult<BulkLoadProgress>> handler;
+        private final List<SQLSession> sessions = new ArrayList<>();
+        private final long start = System.nanoTime();
+        private int chunkSize = initialChunkSize;
+        private long rows = 0;
+        private long chunks = 0;
+        private int running = 0;
+        private Throwable failure;
+        private boolean done = false;
+
+        private Load(Source source, Handler<AsyncResult<BulkLoadProgress>> handler) {
+            this.source = source;
+            this.handler = handler;
+        }
+
+        private void start() {
+            running = parallelism;
+            for (int i = 0; i < parallelism; ++i) {
+                manager.createSession(sessionResult -> {
+                    if (sessionResult.failed()) {
+                        fail(sessionResult.cause());
+                        stopped();
+                        return;
+                    }
+                    sessions.add(sessionResult.result());
+                    next(sessionResult.result());
+                });
+            }
+        }
+
+        private void next(SQLSession session) {
+            if (failure != null) {
+                stopped();
+                return;
+            }
+            source.take(chunkSize, chunk -> {
+                if (source.failure() != null) fail(source.failure());
+                if (chunk.isEmpty() || failure != null) {
+                    stopped();
+                    return;
+                }
+                long chunkStart = System.nanoTime();
+                execute(session, chunk, result -> {
+                    // Also after a failure, outside of a transaction part of the chunk may have been written
+                    invalidate();
+                    if (result.failed()) {
+                        fail(result.cause());
+                        stopped();
+                        return;
+                    }
+                    rows += chunk.size();
+                    ++chunks;
+                    adapt(chunk.size(), System.nanoTime() - chunkStart);
+                    if (progressHandler != null) progressHandler.handle(progress());
+                    next(session);
+                });
+            });
+        }
+
+        private void execute(SQLSession session, List<JsonArray> chunk, Handler<AsyncResult<List<Integer>>> consumer) {
+            JsonArray[] args = chunk.toArray(new JsonArray[0]);
+            if (!transactional) {
+                session.executeBatch(consumer, query, args);
+                return;
+            }
+            session.startTransaction(started -> {
+                if (started.failed()) {
+                    consumer.handle(Future.failedFuture(started.cause()));
+                    return;
+                }
+                session.executeBatch(result -> {
+                    if (result.failed()) {
+                        session.rollback(rolledBack -> consumer.handle(result));
+                        return;
+                    }
+                    session.commit(committed -> consumer.handle(committed.failed()
+                            ? Future.failedFuture(committed.cause()) : result));
+                }, query, args);
+            });
+        }
+
+        private void invalidate() {
+            QueryCache cache = manager.getQueryCache();
+            if (cache != null) cache.invalidate(query);
+        }
+
+        /**
+         * Moves the chunk size towards the size executed in the target duration, at most doubling or halving it
+         */
+        private void adapt(int size, long nanos) {
+            if (size < chunkSize) return;
+            double ratio = Math.max(0.5, Math.min(2, (double) targetChunkNanos / Math.max(1, nanos)));
+            chunkSize = (int) Math.max(minChunkSize, Math.min(maxChunkSize, Math.round(chunkSize * ratio)));
+        }
+
+        private BulkLoadProgress progress() {
+            return new BulkLoadProgress(rows, chunks, System.nanoTime() - start, chunkSize);
+        }
+
+        private void fail(Throwable cause) {
+            if (failure == null) failure = cause;
+            else logger.debug("Bulk load failure after a previous one", cause);
+        }
+
+        private void stopped() {
+            if (--running > 0 || done) return;
+            done = true;
+            sessions.forEach(SQLSession::close);
+            if (failure != null) handler.handle(Future.failedFuture(failure));
+            else handler.handle(Future.succeededFuture(progress()));
+        }
+    }
+
+    /**
+     * Buffers the rows of a stream, pausing it when the buffer is full and resuming it once half of it is consumed
+     */
+    private static class StreamSource implements Source {
+        private final ReadStream<JsonArray> stream;
+        private final int capacity;
+        private final ArrayDeque<JsonArray> buffer = new ArrayDeque<>();
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private boolean ended = false;
+        private boolean paused = false;
+        private Throwable failure;
+
+        private StreamSource(ReadStream<JsonArray> stream, int capacity) {
+            this.stream = stream;
+            this.capacity = capacity;
+            stream.exceptionHandler(e -> {
+                if (failure != null) return;
+                failure = e;
+                buffer.clear();
+                end();
+            });
+            stream.endHandler(v -> end());
+            stream.handler(row -> {
+                if (failure != null) return;
+                buffer.add(row);
+                if (!paused && buffer.size() >= capacity) {
+                    paused = true;
+                    stream.pause();
+                }
+                serve();
+            });
+        }
+
+        private void end() {
+            ended = true;
+            serve();
+        }
+
+        @Override
+        public Throwable failure() {
+            return failure;
+        }
+
+        @Override
+        public void take(int count, Handler<List<JsonArray>> consumer) {
+            waiters.add(new Waiter(count, consumer));
+            serve();
+        }
+
+        private void serve() {
+            while (!waiters.isEmpty() && (ended || buffer.size() >= Math.min(waiters.peek().count, capacity))) {
+                Waiter waiter = waiters.poll();
+                List<JsonArray> chunk = new ArrayList<>(Math.min(waiter.count, buffer.size()));
+                while (chunk.size() < waiter.count && !buffer.isEmpty()) chunk.add(buffer.poll());
+                waiter.consumer.handle(chunk);
+            }
+            if (paused && !ended && buffer.size() <= capacity / 2) {
+                paused = false;
+                stream.resume();
+            }
+        }
+
+        private static class Waiter {
+            private final int count;
+            private final Handler<List<JsonArray>> consumer;
+
+            private Waiter(int count, Handler<List<JsonArray>> consumer) {
+                this.count = count;
+                this.consumer = consumer;
+            }
+        }
+    }
+}
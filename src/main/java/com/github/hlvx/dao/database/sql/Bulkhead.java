@@ -0,0 +1,150 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of DAOs of one class holding a session at the same time
+ * see {@link DaoManager#setBulkhead(Class, int, int, long, java.util.concurrent.TimeUnit)}
+ * A DAO created while the limit is reached waits in a bounded queue. It fails with a
+ * {@link RejectedExecutionException} if the queue is full and with a {@link TimeoutException} if no DAO is closed
+ * before the timeout
+ */
+public class Bulkhead {
+    private final DaoManager manager;
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long timeoutMillis;
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private int active = 0;
+
+    Bulkhead(DaoManager manager, String name, int maxConcurrent, int maxQueued, long timeoutMillis) {
+        this.manager = manager;
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Acquires a permit, {@link #release()} must be called once the permit is no longer used
+     * The handler is called on the context of the caller, or on a context of the Vert.x instance of the manager when
+     * the caller has none. Waiting for a permit without either fails with an {@link IllegalStateException}
+     */
+    void acquire(Handler<AsyncResult<Void>> handler) {
+        Context context = manager.getContext();
+        boolean granted;
+        boolean untimed = false;
+        synchronized (this) {
+            if (active < maxConcurrent) {
+                ++active;
+                granted = true;
+            } else if (waiters.size() < maxQueued && context == null) {
+                granted = false;
+                untimed = true;
+            } else if (waiters.size() < maxQueued) {
+                Waiter waiter = new Waiter(context, handler);
+                waiter.timerId = context.owner().setTimer(timeoutMillis, id -> timeout(waiter));
+                waiters.addLast(waiter);
+                return;
+            } else {
+                granted = false;
+            }
+        }
+        if (granted) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        if (untimed) {
+            handler.handle(Future.failedFuture(new IllegalStateException(
+                    name + " bulkhead waiters are timed on a Vert.x context, see DaoManager#setVertx")));
+            return;
+        }
+        rejected.increment();
+        handler.handle(Future.failedFuture(new RejectedExecutionException(name + " bulkhead is full")));
+    }
+
+    private void timeout(Waiter waiter) {
+        synchronized (this) {
+            if (!waiters.remove(waiter)) return;
+        }
+        timedOut.increment();
+        waiter.handler.handle(Future.failedFuture(
+                new TimeoutException(name + " bulkhead permit not acquired within " + timeoutMillis + "ms")));
+    }
+
+    /**
+     * Releases a permit, it is handed over to the first waiter if there is one
+     */
+    void release() {
+        Waiter waiter;
+        synchronized (this) {
+            waiter = waiters.pollFirst();
+            if (waiter == null) {
+                --active;
+                return;
+            }
+        }
+        waiter.context.owner().cancelTimer(waiter.timerId);
+        if (waiter.context == Vertx.currentContext()) waiter.handler.handle(Future.succeededFuture());
+        else waiter.context.runOnContext(v -> waiter.handler.handle(Future.succeededFuture()));
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * @return The number of permits currently held
+     */
+    public synchronized int getActive() {
+        return active;
+    }
+
+    /**
+     * @return The number of DAO creations currently waiting for a permit
+     */
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    /**
+     * @return The number of DAO creations rejected because the queue was full
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return The number of DAO creations that failed waiting for a permit
+     */
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    private static class Waiter {
+        private final Context context;
+        private final Handler<AsyncResult<Void>> handler;
+        private long timerId;
+
+        private Waiter(Context context, Handler<AsyncResult<Void>> handler) {
+            this.context = context;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.json.JsonArray;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rows of a query stored column by column,
+ * see {@link DAO#executeQueryColumnar(io.vertx.core.Handler, String, Object...)}
+ * Integer columns are stored in int arrays, BIGINT columns and decimal columns without fraction in long arrays,
+ * floating point columns in double arrays and boolean columns in a bit set, so numeric values are never boxed.
+ * Character columns are dictionary encoded: each row holds the code of its value in the dictionary of the column,
+ * which keeps one instance of each distinct value. Other columns are kept as objects, converted like the Vert.x SQL
+ * client does. Nulls are recorded in a bitmap per column, a null primitive value reads as 0 or false
+ */
+public class ColumnarResult {
+    /**
+     * The storage of a column
+     */
+    public enum Type {
+        INT, LONG, DOUBLE, BOOLEAN, STRING, OBJECT
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+    private final List<String> columnNames;
+    private final Column[] columns;
+    private final int rows;
+
+    private ColumnarResult(List<String> columnNames, Column[] columns, int rows) {
+        this.columnNames = Collections.unmodifiableList(columnNames);
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Reads every remaining row of a JDBC result set
+     */
+    static ColumnarResult read(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int count = metaData.getColumnCount();
+        List<String> names = new ArrayList<>(count);
+        Column[] columns = new Column[count];
+        for (int i = 1; i <= count; ++i) {
+            names.add(metaData.getColumnLabel(i));
+            columns[i - 1] = Column.of(metaData.getColumnType(i), metaData.getPrecision(i), metaData.getScale(i));
+        }
+        int row = 0;
+        int capacity = INITIAL_CAPACITY;
+        while (rs.next()) {
+            if (row == capacity) {
+                capacity <<= 1;
+                for (Column column : columns) column.grow(capacity);
+            }
+            for (int i = 0; i < count; ++i) columns[i].read(rs, i + 1, row);
+            ++row;
+        }
+        for (Column column : columns) column.trim(row);
+        return new ColumnarResult(names, columns, row);
+    }
+
+    /**
+     * Converts a result already read by the Vert.x SQL client, used when the JDBC result set is not available
+     * Column types are inferred from the values
+     */
+    static ColumnarResult of(io.vertx.ext.sql.ResultSet resultSet) {
+        List<JsonArray> results = resultSet.getResults();
+        int count = resultSet.getNumColumns();
+        Column[] columns = new Column[count];
+        for (int i = 0; i < count; ++i) {
+            columns[i] = Column.of(infer(results, i));
+            columns[i].grow(Math.max(1, results.size()));
+            for (int row = 0; row < results.size(); ++row) columns[i].set(results.get(row).getValue(i), row);
+            columns[i].trim(results.size());
+        }
+        return new ColumnarResult(new ArrayList<>(resultSet.getColumnNames()), columns, results.size());
+    }
+
+    private static Type infer(List<JsonArray> results, int index) {
+        Type type = null;
+        for (JsonArray row : results) {
+            Object value = row.getValue(index);
+            if (value == null) continue;
+            Type current = value instanceof Integer || value instanceof Short || value instanceof Byte ? Type.INT
+                    : value instanceof Long ? Type.LONG
+                    : value instanceof Double || value instanceof Float ? Type.DOUBLE
+                    : value instanceof Boolean ? Type.BOOLEAN
+                    : value instanceof String ? Type.STRING
+                    : Type.OBJECT;
+            if (type == null || type == current) type = current;
+            else if ((type == Type.INT || type == Type.LONG) && (current == Type.INT || current == Type.LONG))
+                type = Type.LONG;
+            else if (type.compareTo(Type.DOUBLE) <= 0 && current.compareTo(Type.DOUBLE) <= 0) type = Type.DOUBLE;
+            else return Type.OBJECT;
+        }
+        return type == null ? Type.OBJECT : type;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @param name The name of a column, ignoring case
+     * @return The index of the column
+     */
+    public int getColumnIndex(String name) {
+        for (int i = 0; i < columnNames.size(); ++i) if (columnNames.get(i).equalsIgnoreCase(name)) return i;
+        throw new IllegalArgumentException("Unknown column " + name);
+    }
+
+    public Type getColumnType(int column) {
+        return columns[column].type;
+    }
+
+    public boolean isNull(int column, int row) {
+        checkRow(row);
+        return columns[column].isNull(row);
+    }
+
+    /**
+     * @return The value of an INT column
+     */
+    public int getInt(int column, int row) {
+        checkRow(row);
+        return ((IntColumn) typed(column, Type.INT)).values[row];
+    }
+
+    /**
+     * @return The value of an INT or LONG column
+     */
+    public long getLong(int column, int row) {
+        checkRow(row);
+        Column values = columns[column];
+        if (values instanceof IntColumn) return ((IntColumn) values).values[row];
+        return ((LongColumn) typed(column, Type.LONG)).values[row];
+    }
+
+    /**
+     * @return The value of an INT, LONG or DOUBLE column
+     */
+    public double getDouble(int column, int row) {
+        checkRow(row);
+        Column values = columns[column];
+        if (values instanceof IntColumn) return ((IntColumn) values).values[row];
+        if (values instanceof LongColumn) return ((LongColumn) values).values[row];
+        return ((DoubleColumn) typed(column, Type.DOUBLE)).values[row];
+    }
+
+    /**
+     * @return The value of a BOOLEAN column
+     */
+    public boolean getBoolean(int column, int row) {
+        checkRow(row);
+        return ((BooleanColumn) typed(column, Type.BOOLEAN)).values.get(row);
+    }
+
+    /**
+     * @return The value of a STRING column, null if it is null
+     */
+    public String getString(int column, int row) {
+        checkRow(row);
+        StringColumn values = (StringColumn) typed(column, Type.STRING);
+        int code = values.codes[row];
+        return code < 0 ? null : values.dictionary.get(code);
+    }
+
+    /**
+     * @return The value of any column, boxed, null if it is null
+     */
+    public Object getValue(int column, int row) {
+        checkRow(row);
+        return columns[column].isNull(row) ? null : columns[column].get(row);
+    }
+
+    /**
+     * @return The values of an INT column, shared with this result, they must not be modified
+     */
+    public int[] getInts(int column) {
+        return ((IntColumn) typed(column, Type.INT)).values;
+    }
+
+    /**
+     * @return The values of a LONG column, shared with this result, they must not be modified
+     */
+    public long[] getLongs(int column) {
+        return ((LongColumn) typed(column, Type.LONG)).values;
+    }
+
+    /**
+     * @return The values of a DOUBLE column, shared with this result, they must not be modified
+     */
+    public double[] getDoubles(int column) {
+        return ((DoubleColumn) typed(column, Type.DOUBLE)).values;
+    }
+
+    /**
+     * @return The dictionary codes of a STRING column, -1 for null, shared with this result, they must not be modified
+     */
+    public int[] getCodes(int column) {
+        return ((StringColumn) typed(column, Type.STRING)).codes;
+    }
+
+    /**
+     * @return The distinct values of a STRING column, indexed by their code
+     */
+    public List<String> getDictionary(int column) {
+        return Collections.unmodifiableList(((StringColumn) typed(column, Type.STRING)).dictionary);
+    }
+
+    /**
+     * @return The rows of this result as JSON arrays, boxing every value
+     */
+    public List<JsonArray> toJsonArrays() {
+        List<JsonArray> results = new ArrayList<>(rows);
+        for (int row = 0; row < rows; ++row) {
+            JsonArray values = new JsonArray(new ArrayList<>(columns.length));
+            for (int column = 0; column < columns.length; ++column) values.add(getValue(column, row));
+            results.add(values);
+        }
+        return results;
+    }
+
+    private Column typed(int column, Type type) {
+        Column values = columns[column];
+        if (values.type != type)
+            throw new IllegalArgumentException("Column " + columnNames.get(column) + " is " + values.type + ", not "
+                    + type);
+        return values;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rows) throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+    }
+
+    /**
+     * The values of one column, with a null bitmap allocated when the first null is read
+     */
+    private abstract static class Column {
+        final Type type;
+        private BitSet nulls;
+
+        private Column(Type type) {
+            this.type = type;
+        }
+
+        static Column of(int sqlType, int precision, int scale) {
+            switch (sqlType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    return of(Type.INT);
+                case Types.BIGINT:
+                    return of(Type.LONG);
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return scale == 0 && precision > 0 && precision <= 18 ? of(Type.LONG) : of(Type.OBJECT);
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return of(Type.DOUBLE);
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    return of(Type.BOOLEAN);
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.LONGVARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                case Types.LONGNVARCHAR:
+                    return of(Type.STRING);
+                default:
+                    return of(Type.OBJECT);
+            }
+        }
+
+        static Column of(Type type) {
+            switch (type) {
+                case INT:
+                    return new IntColumn();
+                case LONG:
+                    return new LongColumn();
+                case DOUBLE:
+                    return new DoubleColumn();
+                case BOOLEAN:
+                    return new BooleanColumn();
+                case STRING:
+                    return new StringColumn();
+                default:
+                    return new ObjectColumn();
+            }
+        }
+
+        void setNull(int row) {
+            if (nulls == null) nulls = new BitSet();
+            nulls.set(row);
+        }
+
+        boolean isNull(int row) {
+            return nulls != null && nulls.get(row);
+        }
+
+        /**
+         * Reads the current row of a JDBC result set
+         */
+        abstract void read(ResultSet rs, int index, int row) throws SQLException;
+
+        /**
+         * Sets a value converted by the Vert.x SQL client
+         */
+        abstract void set(Object value, int row);
+
+        abstract Object get(int row);
+
+        abstract void grow(int capacity);
+
+        abstract void trim(int size);
+    }
+
+    private static class IntColumn extends Column {
+        private int[] values = new int[INITIAL_CAPACITY];
+
+        private IntColumn() {
+            super(Type.INT);
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            int value = rs.getInt(index);
+            if (value == 0 && rs.wasNull()) setNull(row);
+            else values[row] = value;
+        }
+
+        @Override
+        void set(Object value, int row) {
+            if (value == null) setNull(row);
+            else values[row] = ((Number) value).intValue();
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void trim(int size) {
+            if (values.length != size) values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static class LongColumn extends Column {
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        private LongColumn() {
+            super(Type.LONG);
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            long value = rs.getLong(index);
+            if (value == 0 && rs.wasNull()) setNull(row);
+            else values[row] = value;
+        }
+
+        @Override
+        void set(Object value, int row) {
+            if (value == null) setNull(row);
+            else values[row] = ((Number) value).longValue();
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void trim(int size) {
+            if (values.length != size) values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        private DoubleColumn() {
+            super(Type.DOUBLE);
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            double value = rs.getDouble(index);
+            if (value == 0 && rs.wasNull()) setNull(row);
+            else values[row] = value;
+        }
+
+        @Override
+        void set(Object value, int row) {
+            if (value == null) setNull(row);
+            else values[row] = ((Number) value).doubleValue();
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void trim(int size) {
+            if (values.length != size) values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static class BooleanColumn extends Column {
+        private final BitSet values = new BitSet();
+
+        private BooleanColumn() {
+            super(Type.BOOLEAN);
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            boolean value = rs.getBoolean(index);
+            if (!value && rs.wasNull()) setNull(row);
+            else values.set(row, value);
+        }
+
+        @Override
+        void set(Object value, int row) {
+            if (value == null) setNull(row);
+            else values.set(row, (Boolean) value);
+        }
+
+        @Override
+        Object get(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        void grow(int capacity) {
+        }
+
+        @Override
+        void trim(int size) {
+        }
+    }
+
+    private static class StringColumn extends Column {
+        private int[] codes = new int[INITIAL_CAPACITY];
+        private final List<String> dictionary = new ArrayList<>();
+        private Map<String, Integer> encoding = new HashMap<>();
+
+        private StringColumn() {
+            super(Type.STRING);
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            set(rs.getString(index), row);
+        }
+
+        @Override
+        void set(Object value, int row) {
+            if (value == null) {
+                setNull(row);
+                codes[row] = -1;
+                return;
+            }
+            Integer code = encoding.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add((String) value);
+                encoding.put((String) value, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        Object get(int row) {
+            return dictionary.get(codes[row]);
+        }
+
+        @Override
+        void grow(int capacity) {
+            codes = Arrays.copyOf(codes, capacity);
+        }
+
+        @Override
+        void trim(int size) {
+            if (codes.length != size) codes = Arrays.copyOf(codes, size);
+            // The encoding is only needed while the rows are read
+            encoding = null;
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+        private Object[] values = new Object[INITIAL_CAPACITY];
+
+        private ObjectColumn() {
+            super(Type.OBJECT);
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            Object value = rs.getObject(index);
+            if (value == null) setNull(row);
+            else values[row] = JdbcValues.convert(value);
+        }
+
+        @Override
+        void set(Object value, int row) {
+            if (value == null) setNull(row);
+            else values[row] = value;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void trim(int size) {
+            if (values.length != size) values = Arrays.copyOf(values, size);
+        }
+    }
+}
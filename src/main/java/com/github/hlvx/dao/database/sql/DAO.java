@@ -4,11 +4,17 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLClient;
 import io.vertx.ext.sql.UpdateResult;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base class for DAOs
@@ -18,6 +24,9 @@ public abstract class DAO implements Closeable {
     private SQLSession session;
     private DaoManager manager;
     private boolean closeSession;
+    private DaoScope scope;
+    private Bulkhead bulkhead;
+    private LeakDetector leakDetector;
 
     protected void setCloseSession(boolean close) {
         closeSession = close;
@@ -31,25 +40,398 @@ public abstract class DAO implements Closeable {
         this.manager = daoManager;
     }
 
+    void setScope(DaoScope scope) {
+        this.scope = scope;
+    }
+
+    void setBulkhead(Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Tracks this DAO in a leak detector until it is closed
+     */
+    void setLeakDetector(LeakDetector leakDetector) {
+        this.leakDetector = leakDetector;
+        leakDetector.track(this);
+    }
+
+    /**
+     * Releases the bulkhead permit and closes the session of this DAO once a leak detector found it leaked
+     * The DAO is not returned to its pool since the code that leaked it may still use it
+     */
+    void reclaim() {
+        if (closeSession && session != null) session.close();
+        releaseBulkhead();
+    }
+
+    private void releaseBulkhead() {
+        Bulkhead bulkhead = this.bulkhead;
+        this.bulkhead = null;
+        if (bulkhead != null) bulkhead.release();
+    }
+
+    /**
+     * Marks the session as written before a write, or fails the write if the session is on a replica
+     * @return true if the write can be executed
+     */
+    private <T> boolean startWrite(Handler<AsyncResult<T>> consumer) {
+        if (session.isReadOnly()) {
+            consumer.handle(Future.failedFuture(new IllegalStateException("Read only session, cannot write")));
+            return false;
+        }
+        session.markWritten();
+        return true;
+    }
+
     protected void executeUpdate(Handler<AsyncResult<UpdateResult>> consumer, String query, Object... params) {
-        session.executeUpdate(consumer, query, params);
+        if (!startWrite(consumer)) return;
+        WriteCoalescer coalescer = coalescer();
+        if (coalescer != null) coalescer.submit(query, params, invalidating(measured(consumer, query, params, null), query));
+        else update(invalidating(measured(consumer, query, params, null), query), timeout(), query, params);
+    }
+
+    /**
+     * Executes an update with a deadline, overriding the statement timeout of the manager, see
+     * {@link SQLSession#executeUpdate(Handler, long, TimeUnit, String, Object...)}. The update is never coalesced
+     * @param consumer The handler receiving the result, or a {@link java.util.concurrent.TimeoutException}
+     * @param timeout The maximum duration of the update, 0 for no deadline
+     * @param unit The time unit of timeout
+     * @param query The update to execute
+     * @param params The update parameters
+     */
+    protected void executeUpdate(Handler<AsyncResult<UpdateResult>> consumer, long timeout, TimeUnit unit,
+                                 String query, Object... params) {
+        if (!startWrite(consumer)) return;
+        update(invalidating(measured(consumer, query, params, null), query), unit.toNanos(timeout), query, params);
+    }
+
+    private void update(Handler<AsyncResult<UpdateResult>> consumer, long timeoutNanos, String query,
+                        Object... params) {
+        if (timeoutNanos > 0) session.executeUpdate(consumer, timeoutNanos, TimeUnit.NANOSECONDS, query, params);
+        else session.executeUpdate(consumer, query, params);
     }
 
     protected void executeBatch(Handler<AsyncResult<List<Integer>>> consumer, String query, JsonArray... args) {
-        session.executeBatch(consumer, query, args);
+        executeBatch(consumer, timeout(), TimeUnit.NANOSECONDS, query, args);
+    }
+
+    /**
+     * Executes a batch with a deadline, overriding the statement timeout of the manager, see
+     * {@link SQLSession#executeUpdate(Handler, long, TimeUnit, String, Object...)}
+     * @param consumer The handler receiving the update counts, or a {@link java.util.concurrent.TimeoutException}
+     * @param timeout The maximum duration of the batch, 0 for no deadline
+     * @param unit The time unit of timeout
+     * @param query The statement to execute for each arguments
+     * @param args The arguments of each execution
+     */
+    protected void executeBatch(Handler<AsyncResult<List<Integer>>> consumer, long timeout, TimeUnit unit,
+                                String query, JsonArray... args) {
+        if (!startWrite(consumer)) return;
+        Handler<AsyncResult<List<Integer>>> handler = invalidating(measured(consumer, query, args, null), query);
+        if (timeout > 0) session.executeBatch(handler, timeout, unit, query, args);
+        else session.executeBatch(handler, query, args);
     }
 
     protected void executeBatchCallable(Handler<AsyncResult<List<Integer>>> consumer, String query, List<JsonArray> outputArgs,
                                      JsonArray... args) {
-        session.executeBatchCallable(consumer, query, outputArgs, args);
+        if (!startWrite(consumer)) return;
+        session.executeBatchCallable(invalidating(measured(consumer, query, args, null), null), query, outputArgs, args);
     }
 
     protected void executeInsert(Handler<AsyncResult<UpdateResult>> consumer, String query, Object... params) {
-        session.executeInsert(consumer, query, params);
+        if (!startWrite(consumer)) return;
+        WriteCoalescer coalescer = coalescer();
+        if (coalescer != null) coalescer.submit(query, params, invalidating(measured(consumer, query, params, null), query));
+        else update(invalidating(measured(consumer, query, params, null), query), timeout(), query, params);
+    }
+
+    /**
+     * Executes a query through the query cache of the manager, see {@link DaoManager#setQueryCache(long, long, java.util.concurrent.TimeUnit)}
+     * A cached result is returned without using the session, it is shared and must not be modified.
+     * The cache is bypassed inside a transaction or when the manager has no query cache
+     * @param consumer The handler receiving the result
+     * @param tables The tables read by the query, writes to one of them invalidate the cached result
+     * @param query The query to execute
+     * @param params The query parameters
+     */
+    protected void executeCachedQuery(Handler<AsyncResult<ResultSet>> consumer, Collection<String> tables,
+                                      String query, Object... params) {
+        QueryCache cache = manager == null ? null : manager.getQueryCache();
+        String key = cache == null || session.isInTransaction() ? null : QueryCache.key(query, params);
+        if (key == null) {
+            read(consumer, timeout(), query, params);
+            return;
+        }
+        ResultSet cached = cache.get(key);
+        if (cached != null) {
+            (scope == null ? consumer : scope.guard(consumer)).handle(Future.succeededFuture(cached));
+            return;
+        }
+        List<String> normalized = new ArrayList<>(tables.size());
+        for (String table : tables) normalized.add(QueryCache.normalize(table));
+        long version = cache.version(normalized);
+        long ttl = manager.getQueryCacheTtl(getClass());
+        read(result -> {
+            if (result.succeeded()) cache.put(key, normalized, result.result(), ttl, version);
+            consumer.handle(result);
+        }, timeout(), query, params);
+    }
+
+    /**
+     * @param params The parameters of the statement, the arguments of a batch, or null for a pipeline
+     * @param client The client the statement runs on, where the slow query log explains it, null for the writes
+     *               which are never explained
+     */
+    private <T> Handler<AsyncResult<T>> measured(Handler<AsyncResult<T>> handler, String query, Object params,
+                                                 SQLClient client) {
+        Handler<AsyncResult<T>> consumer = scope == null ? handler : scope.guard(handler);
+        DaoMetrics metrics = manager == null ? null : manager.getMetrics();
+        SlowQueryLog slowQueries = manager == null ? null : manager.getSlowQueryLog();
+        if (metrics == null && slowQueries == null) return consumer;
+        Class<? extends DAO> dao = getClass();
+        SQLSession session = this.session;
+        DaoManager manager = this.manager;
+        long start = System.nanoTime();
+        return result -> {
+            long nanos = System.nanoTime() - start;
+            Throwable failure = result.failed() ? result.cause() : null;
+            if (metrics != null) metrics.statementExecuted(dao, query, nanos, failure);
+            if (slowQueries != null && nanos >= slowQueries.getThresholdNanos())
+                slowQueries.record(client, dao, query, params, nanos, session.getConnectionWaitNanos(), failure);
+            consumer.handle(result);
+        };
+    }
+
+    /**
+     * @return The client a query runs on: the replica it is sent to, the replica of the session, or the primary
+     */
+    private SQLClient queryClient(ReplicaBalancer.Replica replica) {
+        if (replica != null) return replica.getClient();
+        if (session.isReadOnly()) return session.getReplicaClient();
+        return manager == null ? null : manager.getClient();
+    }
+
+    private WriteCoalescer coalescer() {
+        if (manager == null || session.isInTransaction()) return null;
+        return manager.getWriteCoalescer(getClass());
+    }
+
+    private <T> Handler<AsyncResult<T>> invalidating(Handler<AsyncResult<T>> consumer, String query) {
+        QueryCache cache = manager == null ? null : manager.getQueryCache();
+        if (cache == null) return consumer;
+        SQLSession session = this.session;
+        return result -> {
+            // Invalidates even on failure, a failed batch may have been partially applied
+            if (query == null) cache.invalidate((Collection<String>) null);
+            else cache.invalidate(query);
+            session.afterTransaction(() -> {
+                if (query == null) cache.invalidate((Collection<String>) null);
+                else cache.invalidate(query);
+            });
+            consumer.handle(result);
+        };
     }
 
     protected void executeQuery(Handler<AsyncResult<ResultSet>> consumer, String query, Object... params) {
-        session.executeQuery(consumer, query, params);
+        read(consumer, timeout(), query, params);
+    }
+
+    /**
+     * Executes a query with a deadline, overriding the statement timeout of the manager, see
+     * {@link SQLSession#executeUpdate(Handler, long, TimeUnit, String, Object...)}. Queries sent to a replica only get
+     * the JDBC query timeout
+     * @param consumer The handler receiving the result, or a {@link java.util.concurrent.TimeoutException}
+     * @param timeout The maximum duration of the query, 0 for no deadline
+     * @param unit The time unit of timeout
+     * @param query The query to execute
+     * @param params The query parameters
+     */
+    protected void executeQuery(Handler<AsyncResult<ResultSet>> consumer, long timeout, TimeUnit unit, String query,
+                                Object... params) {
+        read(consumer, unit.toNanos(timeout), query, params);
+    }
+
+    /**
+     * Loads the rows of one key with a query selecting the rows of several keys, for instance
+     * "SELECT * FROM users WHERE id IN (?)". When read coalescing is enabled for this DAO class, see
+     * {@link DaoManager#enableReadCoalescing(Class, long, TimeUnit, int)}, the lookups of concurrent callers are merged
+     * in a single query and the rows are shared between the callers, they must not be modified
+     * @param consumer The handler receiving the first row of the key, or null if there is none
+     * @param query The query to execute, with a single IN (?) placeholder receiving the keys
+     * @param keyColumn The column holding the key in the rows of the query
+     * @param key The key to load
+     */
+    protected void executeLoad(Handler<AsyncResult<JsonObject>> consumer, String query, String keyColumn, Object key) {
+        executeLoadAll(result -> {
+            if (result.failed()) consumer.handle(Future.failedFuture(result.cause()));
+            else consumer.handle(Future.succeededFuture(result.result().isEmpty() ? null : result.result().get(0)));
+        }, query, keyColumn, key);
+    }
+
+    /**
+     * Loads every row of one key, see {@link #executeLoad(Handler, String, String, Object)}
+     * @param consumer The handler receiving the rows of the key
+     * @param query The query to execute, with a single IN (?) placeholder receiving the keys
+     * @param keyColumn The column holding the key in the rows of the query
+     * @param key The key to load
+     */
+    protected void executeLoadAll(Handler<AsyncResult<List<JsonObject>>> consumer, String query, String keyColumn,
+                                  Object key) {
+        ReadCoalescer coalescer = manager == null || session.isInTransaction() || session.isWritten() ? null
+                : manager.getReadCoalescer(getClass());
+        // A coalesced lookup is not explained, it runs with the keys of other lookups on a replica picked later
+        ReplicaBalancer.Replica replica = coalescer == null ? replicaRead() : null;
+        Handler<AsyncResult<List<JsonObject>>> handler = measured(consumer, query, new Object[] { key },
+                coalescer == null ? queryClient(replica) : null);
+        try {
+            ReadCoalescer.validate(query);
+        } catch (IllegalArgumentException e) {
+            handler.handle(Future.failedFuture(e));
+            return;
+        }
+        if (coalescer != null) {
+            coalescer.submit(query, keyColumn, key, handler);
+            return;
+        }
+        read(replica, result -> {
+            if (result.failed()) {
+                handler.handle(Future.failedFuture(result.cause()));
+                return;
+            }
+            List<JsonObject> rows;
+            try {
+                rows = ReadCoalescer.group(result.result(), keyColumn)
+                        .getOrDefault(ReadCoalescer.normalize(key), Collections.emptyList());
+            } catch (RuntimeException e) {
+                handler.handle(Future.failedFuture(e));
+                return;
+            }
+            handler.handle(Future.succeededFuture(rows));
+        }, timeout(), query, key);
+    }
+
+    /**
+     * @return The statement timeout of this DAO class in nanoseconds, 0 if there is none
+     */
+    private long timeout() {
+        return manager == null ? 0 : manager.getStatementTimeout(getClass());
+    }
+
+    /**
+     * Executes a query and maps each row to an instance of a class, without building a JsonObject per row
+     * Columns are matched to the fields of the class by name, ignoring case and underscores: the column user_name
+     * fills the field userName. Unmatched columns are ignored, unmatched fields keep their default value
+     * @param consumer The handler receiving the mapped rows
+     * @param type The class of the rows, it needs an empty constructor
+     * @param query The query to execute
+     * @param params The query parameters
+     * @param <T> The row type
+     */
+    protected <T> void executeQueryAs(Handler<AsyncResult<List<T>>> consumer, Class<T> type, String query,
+                                      Object... params) {
+        ReplicaBalancer.Replica replica = replicaRead();
+        Handler<AsyncResult<List<T>>> handler = measured(consumer, query, params, queryClient(replica));
+        if (replica == null) {
+            session.executeQueryAs(handler, type, query, params);
+            return;
+        }
+        manager.queryReplica(replica, result -> {
+            if (result.failed()) {
+                handler.handle(Future.failedFuture(result.cause()));
+                return;
+            }
+            List<T> rows;
+            try {
+                rows = RowMapper.of(type, result.result().getColumnNames()).mapAll(result.result());
+            } catch (RuntimeException e) {
+                handler.handle(Future.failedFuture(e));
+                return;
+            }
+            handler.handle(Future.succeededFuture(rows));
+        }, 0, query, params);
+    }
+
+    /**
+     * Executes a query and stores its rows column by column in primitive arrays, without boxing numeric values nor
+     * building a JsonArray per row, see {@link ColumnarResult}. Suited to large numeric results such as aggregates
+     * @param consumer The handler receiving the columns
+     * @param query The query to execute
+     * @param params The query parameters
+     */
+    protected void executeQueryColumnar(Handler<AsyncResult<ColumnarResult>> consumer, String query,
+                                        Object... params) {
+        ReplicaBalancer.Replica replica = replicaRead();
+        Handler<AsyncResult<ColumnarResult>> handler = measured(consumer, query, params, queryClient(replica));
+        if (replica == null) {
+            session.executeQueryColumnar(handler, query, params);
+            return;
+        }
+        manager.queryReplica(replica, result -> {
+            if (result.failed()) {
+                handler.handle(Future.failedFuture(result.cause()));
+                return;
+            }
+            handler.handle(Future.succeededFuture(ColumnarResult.of(result.result())));
+        }, 0, query, params);
+    }
+
+    /**
+     * Sends a measured query to a replica of the manager, unless the session is in a transaction or has written data,
+     * so that the DAO always reads its own writes
+     */
+    private void read(Handler<AsyncResult<ResultSet>> consumer, long timeoutNanos, String query, Object... params) {
+        ReplicaBalancer.Replica replica = replicaRead();
+        read(replica, measured(consumer, query, params, queryClient(replica)), timeoutNanos, query, params);
+    }
+
+    /**
+     * Sends a query to the replica picked by {@link #replicaRead()}, or to the session when there is none
+     */
+    private void read(ReplicaBalancer.Replica replica, Handler<AsyncResult<ResultSet>> consumer, long timeoutNanos,
+                      String query, Object... params) {
+        if (replica != null) manager.queryReplica(replica, consumer, timeoutNanos, query, params);
+        else if (timeoutNanos > 0) session.executeQuery(consumer, timeoutNanos, TimeUnit.NANOSECONDS, query, params);
+        else session.executeQuery(consumer, query, params);
+    }
+
+    /**
+     * @return The replica a read of this DAO is sent to, or null when it runs on the session
+     */
+    private ReplicaBalancer.Replica replicaRead() {
+        return readsFromReplica() ? manager.pickReplica() : null;
+    }
+
+    private boolean readsFromReplica() {
+        return manager != null && manager.hasReplicas() && !session.isReadOnly() && !session.isInTransaction()
+                && !session.isWritten();
+    }
+
+    /**
+     * Executes the statements of a pipeline back to back on the session of this DAO, see
+     * {@link SQLSession#executePipeline(Handler, Pipeline)}
+     * @param consumer The handler receiving the results of every statement
+     * @param pipeline The statements to execute
+     */
+    protected void executePipeline(Handler<AsyncResult<PipelineResult>> consumer, Pipeline pipeline) {
+        Handler<AsyncResult<PipelineResult>> handler = measured(consumer, pipeline.toString(), null, null);
+        for (Pipeline.Step step : pipeline.getSteps()) {
+            if (!step.update) continue;
+            if (!startWrite(consumer)) return;
+            handler = invalidating(handler, step.query);
+        }
+        session.executePipeline(handler, pipeline);
+    }
+
+    /**
+     * Executes a query and streams its rows, the DAO is closed when the stream ends, fails or is closed
+     * @param consumer The handler receiving the row stream
+     * @param fetchSize The number of rows the driver fetches per round trip, 0 to use the driver default
+     * @param query The query to execute
+     * @param params The query parameters
+     */
+    protected void executeQueryStream(Handler<AsyncResult<RowStream>> consumer, int fetchSize, String query, Object... params) {
+        session.executeQueryStream(measured(consumer, query, params, queryClient(null)), fetchSize, this, query, params);
     }
 
     public void startTransaction(Handler<AsyncResult<Void>> handler) {
@@ -85,8 +467,13 @@ public abstract class DAO implements Closeable {
     @Override
     public void close() {
         if (session == null || manager == null) return;
+        if (scope != null) scope.unregister(this);
+        scope = null;
         if (closeSession) session.close();
         session = null;
+        releaseBulkhead();
+        if (leakDetector != null) leakDetector.untrack(this);
+        leakDetector = null;
         try {
             manager.returnDao(this);
             manager = null;
@@ -1,32 +1,568 @@
 package com.github.hlvx.dao.database.sql;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLClient;
-import org.apache.commons.pool2.BasePooledObjectFactory;
-import org.apache.commons.pool2.ObjectPool;
-import org.apache.commons.pool2.PooledObject;
-import org.apache.commons.pool2.impl.DefaultPooledObject;
-import org.apache.commons.pool2.impl.GenericObjectPool;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Closeable;
-import java.lang.reflect.Constructor;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class DaoManager {
     private static final Logger logger = LoggerFactory.getLogger(DaoManager.class);
     private final SQLClient client;
-    private final Map<Class<? extends DAO> , ObjectPool<DAO>> daoPools = new ConcurrentHashMap<>();
+    private final ReplicaBalancer replicas;
+    private final List<DaoManager> shards;
+    private final ShardResolver shardResolver;
+    private final Map<Class<? extends DAO> , DaoPool> daoPools = new ConcurrentHashMap<>();
+    private final StatementCacheStats statementCacheStats;
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private volatile boolean statementCacheEnabled = false;
+    private volatile int statementCacheSize = 64;
+    private final Map<Class<? extends DAO>, Long> queryCacheTtls = new ConcurrentHashMap<>();
+    private volatile QueryCache queryCache;
+    private volatile long queryCacheTtl;
+    private final Map<Class<? extends DAO>, Long> statementTimeouts = new ConcurrentHashMap<>();
+    private volatile long statementTimeout = 0;
+    private final Map<Class<? extends DAO>, Boolean> lazyConnections = new ConcurrentHashMap<>();
+    private volatile boolean lazyConnection = false;
+    private final Map<Class<? extends DAO>, WriteCoalescer> writeCoalescers = new ConcurrentHashMap<>();
+    private final Map<Class<? extends DAO>, ReadCoalescer> readCoalescers = new ConcurrentHashMap<>();
+    private final Map<Class<? extends DAO>, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final Map<Class<? extends DAO>, List<String>> declaredStatements = new ConcurrentHashMap<>();
+    private volatile DaoMetrics metrics;
+    private volatile SlowQueryLog slowQueryLog;
+    private volatile LeakDetector leakDetector;
+    private volatile Vertx vertx;
+    private volatile boolean ready = false;
 
     public DaoManager(SQLClient client) {
-        this.client = client;
+        this(client, Collections.emptyList());
+    }
+
+    /**
+     * Creates a manager splitting reads and writes between a primary database and its read replicas
+     * Queries executed by a DAO outside of a transaction are sent to the replica with the fewest outstanding reads,
+     * weighted by its recent latency, until the session of the DAO writes something. Writes, transactions and
+     * streamed queries always use the primary
+     * @param primary The SQL client of the primary database
+     * @param replicas The SQL clients of the read replicas
+     */
+    public DaoManager(SQLClient primary, List<? extends SQLClient> replicas) {
+        this(primary, replicas, new StatementCacheStats());
+    }
+
+    private DaoManager(SQLClient primary, List<? extends SQLClient> replicas, StatementCacheStats statementCacheStats) {
+        this.client = primary;
+        this.replicas = new ReplicaBalancer(replicas);
+        this.shards = Collections.emptyList();
+        this.shardResolver = null;
+        this.statementCacheStats = statementCacheStats;
+    }
+
+    /**
+     * Creates a manager routing DAOs and sessions to one of several databases by shard key
+     * Each shard has its own manager, holding its own DAO pools and metrics, see {@link #getShard(int)}.
+     * The settings of this manager are applied to every shard, DAOs and sessions must be created with a shard key, see
+     * {@link #createDaoForShard(Object, Class, Handler)} and {@link #createShardSession(Object, Handler)}
+     * @param shards The SQL clients of the shards
+     * @param resolver The resolver choosing the shard of a shard key
+     */
+    public DaoManager(List<? extends SQLClient> shards, ShardResolver resolver) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("At least one shard is required");
+        this.client = null;
+        this.replicas = new ReplicaBalancer(Collections.emptyList());
+        this.statementCacheStats = new StatementCacheStats();
+        List<DaoManager> managers = new ArrayList<>(shards.size());
+        for (SQLClient shard : shards)
+            managers.add(new DaoManager(shard, Collections.emptyList(), statementCacheStats));
+        this.shards = Collections.unmodifiableList(managers);
+        this.shardResolver = resolver;
+    }
+
+    /**
+     * @return The number of shards of this manager, 0 if it is not sharded
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @param index The index of the shard
+     * @return The manager of the shard, useful to set metrics per shard
+     */
+    public DaoManager getShard(int index) {
+        return shards.get(index);
+    }
+
+    /**
+     * @param shardKey The shard key
+     * @return The manager of the shard holding the data of the shard key
+     */
+    public DaoManager resolveShard(Object shardKey) {
+        if (shardResolver == null) throw new IllegalStateException("DaoManager is not sharded");
+        int index = shardResolver.resolve(shardKey, shards.size());
+        if (index < 0 || index >= shards.size())
+            throw new IllegalStateException("Shard " + index + " resolved for " + shardKey + " does not exist");
+        return shards.get(index);
+    }
+
+    private void forEachShard(Consumer<DaoManager> action) {
+        shards.forEach(action);
+    }
+
+    /**
+     * Sets the Vert.x instance scheduling the timers of the calls made outside of a Vert.x context, such as the window
+     * of a coalesced statement or the timeout of a DAO waiting for its bulkhead. Calls made on a context use its own
+     * @param vertx The Vert.x instance, or null to require a context for these calls, which is the default
+     */
+    public void setVertx(Vertx vertx) {
+        forEachShard(shard -> shard.setVertx(vertx));
+        this.vertx = vertx;
+    }
+
+    /**
+     * @return The context of the caller, a context of the Vert.x instance of this manager when the caller has none,
+     * or null without either
+     */
+    Context getContext() {
+        Context context = Vertx.currentContext();
+        if (context != null || vertx == null) return context;
+        return vertx.getOrCreateContext();
+    }
+
+    /**
+     * Enables or disables the prepared statement cache of the sessions created by this manager
+     * When enabled, the statements prepared by a session are kept with the pooled connection they were prepared on and
+     * reused by every later session getting the same connection from the pool, until the pool closes the connection.
+     * Disabling the cache stops using it, the statements already cached are closed with their connection
+     * Only applies to JDBC clients, the cache is disabled by default
+     * @param enabled true to enable the cache
+     */
+    public void setStatementCacheEnabled(boolean enabled) {
+        forEachShard(shard -> shard.setStatementCacheEnabled(enabled));
+        this.statementCacheEnabled = enabled;
+    }
+
+    public boolean isStatementCacheEnabled() {
+        return statementCacheEnabled;
+    }
+
+    /**
+     * Sets the maximum number of prepared statements kept per connection, least recently used statements are closed
+     * first. Only applies to the connections cached afterwards
+     * @param size The cache size, must be positive
+     */
+    public void setStatementCacheSize(int size) {
+        if (size <= 0) throw new IllegalArgumentException("Statement cache size must be positive");
+        forEachShard(shard -> shard.setStatementCacheSize(size));
+        this.statementCacheSize = size;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @return The hit and miss counters of the prepared statement caches of this manager
+     */
+    public StatementCacheStats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    /**
+     * Returns the prepared statement cache of a pooled connection, creating it on first use
+     * The cache is keyed by the physical connection behind the proxy handed out by the pool, so it outlives the
+     * sessions using the connection. The caches of the connections closed by the pool are dropped when a new one is
+     * created
+     * @param connection The JDBC connection of a session
+     * @return The cache, or null if the cache is disabled or the physical connection cannot be reached
+     */
+    StatementCache getStatementCache(Connection connection) {
+        if (!statementCacheEnabled) return null;
+        Connection physical;
+        try {
+            physical = connection.isWrapperFor(Connection.class) ? connection.unwrap(Connection.class) : connection;
+        } catch (SQLException e) {
+            logger.debug("Cannot unwrap connection, statements are not cached", e);
+            return null;
+        }
+        StatementCache cache = statementCaches.get(physical);
+        if (cache != null) return cache;
+        statementCaches.values().removeIf(StatementCache::isClosed);
+        return statementCaches.computeIfAbsent(physical,
+                key -> new StatementCache(key, statementCacheSize, statementCacheStats));
+    }
+
+    /**
+     * Enables the query result cache used by {@link DAO#executeCachedQuery(Handler, java.util.Collection, String, Object...)}
+     * Results are keyed by SQL text and parameters, the least recently used results are evicted when the total
+     * weight goes over the maximum. Calling this method again replaces the cache and drops every cached result
+     * @param maxWeight The maximum number of cells (rows x columns) kept in the cache
+     * @param defaultTtl The default time to live of a cached result
+     * @param unit The time unit of defaultTtl
+     */
+    public void setQueryCache(long maxWeight, long defaultTtl, TimeUnit unit) {
+        if (maxWeight <= 0) throw new IllegalArgumentException("Query cache weight must be positive");
+        forEachShard(shard -> shard.setQueryCache(maxWeight, defaultTtl, unit));
+        this.queryCacheTtl = unit.toNanos(defaultTtl);
+        this.queryCache = new QueryCache(maxWeight);
+    }
+
+    /**
+     * Disables the query result cache and drops every cached result
+     */
+    public void disableQueryCache() {
+        forEachShard(DaoManager::disableQueryCache);
+        queryCache = null;
+    }
+
+    /**
+     * Sets the time to live of the results cached by a DAO class, overriding the default one
+     * @param dao The DAO class
+     * @param ttl The time to live of a cached result
+     * @param unit The time unit of ttl
+     */
+    public void setQueryCacheTtl(Class<? extends DAO> dao, long ttl, TimeUnit unit) {
+        forEachShard(shard -> shard.setQueryCacheTtl(dao, ttl, unit));
+        queryCacheTtls.put(dao, unit.toNanos(ttl));
+    }
+
+    /**
+     * Removes the cached results depending on these tables, useful when tables are written outside of this manager
+     * @param tables The written tables
+     */
+    public void invalidateQueryCache(String... tables) {
+        forEachShard(shard -> shard.invalidateQueryCache(tables));
+        QueryCache cache = queryCache;
+        if (cache == null) return;
+        String[] normalized = new String[tables.length];
+        for (int i = 0; i < tables.length; ++i) normalized[i] = QueryCache.normalize(tables[i]);
+        cache.invalidate(Arrays.asList(normalized));
+    }
+
+    QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    long getQueryCacheTtl(Class<? extends DAO> dao) {
+        return queryCacheTtls.getOrDefault(dao, queryCacheTtl);
+    }
+
+    /**
+     * Sets the default timeout of the queries, updates and batches executed by every DAO, see
+     * {@link SQLSession#executeUpdate(Handler, long, TimeUnit, String, Object...)} for what happens when it passes.
+     * Coalesced writes and lookups are not bounded by the timeout
+     * @param timeout The timeout, 0 to disable it, which is the default
+     * @param unit The time unit of timeout
+     */
+    public void setStatementTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) throw new IllegalArgumentException("Statement timeout cannot be negative");
+        forEachShard(shard -> shard.setStatementTimeout(timeout, unit));
+        this.statementTimeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Overrides the default statement timeout for a DAO class, see {@link #setStatementTimeout(long, TimeUnit)}
+     * @param dao The DAO class
+     * @param timeout The timeout, 0 to disable it for this class
+     * @param unit The time unit of timeout
+     */
+    public void setStatementTimeout(Class<? extends DAO> dao, long timeout, TimeUnit unit) {
+        if (timeout < 0) throw new IllegalArgumentException("Statement timeout cannot be negative");
+        forEachShard(shard -> shard.setStatementTimeout(dao, timeout, unit));
+        statementTimeouts.put(dao, unit.toNanos(timeout));
+    }
+
+    long getStatementTimeout(Class<? extends DAO> dao) {
+        return statementTimeouts.getOrDefault(dao, statementTimeout);
+    }
+
+    /**
+     * Enables or disables lazy connections for the DAOs created by this manager
+     * A lazy DAO is handed over without waiting for a connection: each statement takes a connection from the client
+     * when it is executed and releases it once it completes, and a transaction keeps its connection from
+     * {@link SQLSession#startTransaction(Handler)} to its commit or rollback. DAOs holding no connection while they
+     * do other work, many more DAOs can be open than the client has connections.
+     * Read only DAOs and DAOs created on an existing session are never lazy. Each lazy statement runs on a session of
+     * its own, which uses the prepared statement cache of the connection it got from the pool
+     * @param enabled true to enable lazy connections, they are disabled by default
+     */
+    public void setLazyConnections(boolean enabled) {
+        forEachShard(shard -> shard.setLazyConnections(enabled));
+        this.lazyConnection = enabled;
+    }
+
+    /**
+     * Overrides {@link #setLazyConnections(boolean)} for a DAO class
+     * @param dao The DAO class
+     * @param enabled true to enable lazy connections for this class
+     */
+    public void setLazyConnections(Class<? extends DAO> dao, boolean enabled) {
+        forEachShard(shard -> shard.setLazyConnections(dao, enabled));
+        lazyConnections.put(dao, enabled);
+    }
+
+    boolean isLazyConnections(Class<? extends DAO> dao) {
+        return lazyConnections.getOrDefault(dao, lazyConnection);
+    }
+
+    /**
+     * Enables write coalescing for a DAO class
+     * Identical {@link DAO#executeInsert(Handler, String, Object...)} and {@link DAO#executeUpdate(Handler, String, Object...)}
+     * calls issued outside of a transaction within the window are merged in a single batch executed on one session.
+     * Each caller receives the update count of its own row, generated keys are not returned in this mode.
+     * If the batch fails, every merged call fails with the same cause
+     * @param dao The DAO class whose writes are coalesced
+     * @param window The maximum time a write waits for other identical writes
+     * @param unit The time unit of window
+     * @param maxRows The number of rows after which a batch is executed without waiting for the end of the window
+     */
+    public void enableWriteCoalescing(Class<? extends DAO> dao, long window, TimeUnit unit, int maxRows) {
+        if (maxRows <= 0) throw new IllegalArgumentException("Max rows must be positive");
+        forEachShard(shard -> shard.enableWriteCoalescing(dao, window, unit, maxRows));
+        writeCoalescers.put(dao, new WriteCoalescer(this, Math.max(1, unit.toMillis(window)), maxRows));
+    }
+
+    /**
+     * Disables write coalescing for a DAO class, pending batches are still executed
+     * @param dao The DAO class
+     */
+    public void disableWriteCoalescing(Class<? extends DAO> dao) {
+        forEachShard(shard -> shard.disableWriteCoalescing(dao));
+        writeCoalescers.remove(dao);
+    }
+
+    WriteCoalescer getWriteCoalescer(Class<? extends DAO> dao) {
+        return writeCoalescers.isEmpty() ? null : writeCoalescers.get(dao);
+    }
+
+    /**
+     * Enables read coalescing for a DAO class
+     * Identical {@link DAO#executeLoad(Handler, String, String, Object)} lookups issued outside of a transaction within
+     * the window are merged in a single IN query executed on one read only session, each distinct key being sent once.
+     * Each caller receives the rows of its own key. If the query fails, every merged lookup fails with the same cause
+     * @param dao The DAO class whose lookups are coalesced
+     * @param window The maximum time a lookup waits for other lookups, 0 to only merge the lookups issued during the
+     *               same event loop tick
+     * @param unit The time unit of window
+     * @param maxKeys The number of distinct keys after which a query is executed without waiting for the end of the
+     *                window
+     */
+    public void enableReadCoalescing(Class<? extends DAO> dao, long window, TimeUnit unit, int maxKeys) {
+        if (maxKeys <= 0) throw new IllegalArgumentException("Max keys must be positive");
+        if (window < 0) throw new IllegalArgumentException("Window cannot be negative");
+        forEachShard(shard -> shard.enableReadCoalescing(dao, window, unit, maxKeys));
+        long millis = window == 0 ? 0 : Math.max(1, unit.toMillis(window));
+        readCoalescers.put(dao, new ReadCoalescer(this, millis, maxKeys));
+    }
+
+    /**
+     * Disables read coalescing for a DAO class, pending lookups are still executed
+     * @param dao The DAO class
+     */
+    public void disableReadCoalescing(Class<? extends DAO> dao) {
+        forEachShard(shard -> shard.disableReadCoalescing(dao));
+        readCoalescers.remove(dao);
+    }
+
+    ReadCoalescer getReadCoalescer(Class<? extends DAO> dao) {
+        return readCoalescers.isEmpty() ? null : readCoalescers.get(dao);
+    }
+
+    /**
+     * Limits the number of DAOs of a class holding their own session at the same time, so that a burst of slow DAOs
+     * cannot take every connection of the client. DAOs created with {@link #createDao(SQLSession, Class, Handler)}
+     * use the connection of the session and are not limited.
+     * A DAO created while the limit is reached waits until another DAO of the class is closed. The creation fails
+     * with a {@link java.util.concurrent.RejectedExecutionException} if maxQueued creations are already waiting,
+     * and with a {@link java.util.concurrent.TimeoutException} if it waited longer than the timeout.
+     * A sharded manager sets the limit on every shard, each shard limiting its own DAOs
+     * @param dao The DAO class
+     * @param maxConcurrent The maximum number of open DAOs of the class
+     * @param maxQueued The maximum number of DAO creations waiting, 0 to fail as soon as the limit is reached
+     * @param timeout The maximum time a DAO creation waits
+     * @param unit The time unit of timeout
+     */
+    public void setBulkhead(Class<? extends DAO> dao, int maxConcurrent, int maxQueued, long timeout, TimeUnit unit) {
+        if (maxConcurrent <= 0) throw new IllegalArgumentException("Max concurrent must be positive");
+        if (maxQueued < 0) throw new IllegalArgumentException("Max queued cannot be negative");
+        forEachShard(shard -> shard.setBulkhead(dao, maxConcurrent, maxQueued, timeout, unit));
+        // The DAOs of a sharded manager are opened by its shards, only their bulkheads see traffic
+        if (shards.isEmpty()) {
+            bulkheads.put(dao, new Bulkhead(this, dao.getSimpleName(), maxConcurrent, maxQueued,
+                    Math.max(1, unit.toMillis(timeout))));
+        }
+    }
+
+    /**
+     * Removes the limit of a DAO class, DAOs waiting for a permit still wait for it
+     * @param dao The DAO class
+     */
+    public void removeBulkhead(Class<? extends DAO> dao) {
+        bulkheads.remove(dao);
+        forEachShard(shard -> shard.removeBulkhead(dao));
+    }
+
+    /**
+     * @param dao The DAO class
+     * @return The limit of the DAO class with its current usage, or null if the class is not limited
+     * @throws IllegalStateException If this manager is sharded, see {@link #getShardBulkhead(Object, Class)}
+     */
+    public Bulkhead getBulkhead(Class<? extends DAO> dao) {
+        if (!shards.isEmpty())
+            throw new IllegalStateException("DaoManager is sharded, its bulkheads are read with getShardBulkhead");
+        return bulkheads.get(dao);
+    }
+
+    /**
+     * @param shardKey The shard key
+     * @param dao The DAO class
+     * @return The limit of the DAO class on the shard holding the data of the shard key, or null if the class is not
+     * limited
+     */
+    public Bulkhead getShardBulkhead(Object shardKey, Class<? extends DAO> dao) {
+        return resolveShard(shardKey).getBulkhead(dao);
+    }
+
+    /**
+     * Sets the listener receiving the metrics of this manager and of the sessions it creates
+     * Nothing is measured when no listener is set, which is the default
+     * @param metrics The metrics listener, or null to disable metrics
+     */
+    public void setMetrics(DaoMetrics metrics) {
+        forEachShard(shard -> shard.setMetrics(metrics));
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The metrics listener of this manager, or null if metrics are disabled
+     */
+    public DaoMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the log recording the statements of the DAOs of this manager slower than its threshold
+     * A sharded manager shares the log between its shards, the statements are explained on their shard
+     * @param slowQueryLog The log, or null to disable it, which is the default
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        forEachShard(shard -> shard.setSlowQueryLog(slowQueryLog));
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * @return The slow query log of this manager, or null if it is disabled
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * Sets the detector tracking the DAOs and sessions created by this manager until they are closed
+     * A sharded manager shares the detector between its shards
+     * @param leakDetector The detector, or null to disable leak detection, which is the default
+     */
+    public void setLeakDetector(LeakDetector leakDetector) {
+        forEachShard(shard -> shard.setLeakDetector(leakDetector));
+        this.leakDetector = leakDetector;
+    }
+
+    /**
+     * @return The leak detector of this manager, or null if leak detection is disabled
+     */
+    public LeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    SQLClient getClient() {
+        return client;
+    }
+
+    /**
+     * Creates a new SQLSession using the settings of this manager, useful when using multiple DAOs with the same session
+     * @param handler The handler to use
+     */
+    public void createSession(Handler<AsyncResult<SQLSession>> handler) {
+        createSession(new DaoScope(), handler);
+    }
+
+    /**
+     * Creates a new SQLSession registered in a scope, the session is closed with the scope
+     * @param scope The scope of the operation using this session
+     * @param handler The handler to use
+     */
+    public void createSession(DaoScope scope, Handler<AsyncResult<SQLSession>> handler) {
+        if (client == null) {
+            scope.guard(handler).handle(Future.failedFuture(new IllegalStateException(
+                    "A shard key is required, use createDaoForShard or createShardSession")));
+            return;
+        }
+        SQLSession.createSession(client, this, scope, handler);
+    }
+
+    /**
+     * Creates a new SQLSession on the shard holding the data of a shard key
+     * @param shardKey The shard key
+     * @param handler The handler to use
+     */
+    public void createShardSession(Object shardKey, Handler<AsyncResult<SQLSession>> handler) {
+        createShardSession(new DaoScope(), shardKey, handler);
+    }
+
+    /**
+     * Creates a new SQLSession on the shard holding the data of a shard key, registered in a scope
+     * @param scope The scope of the operation using this session
+     * @param shardKey The shard key
+     * @param handler The handler to use
+     */
+    public void createShardSession(DaoScope scope, Object shardKey, Handler<AsyncResult<SQLSession>> handler) {
+        DaoManager shard;
+        try {
+            shard = resolveShard(shardKey);
+        } catch (RuntimeException e) {
+            scope.guard(handler).handle(Future.failedFuture(e));
+            return;
+        }
+        shard.createSession(scope, handler);
+    }
+
+    /**
+     * Creates a new SQLSession on a replica, or on the primary database if this manager has no replica
+     * Every statement of the session, including the ones executed in a transaction, uses the same replica
+     * @param handler The handler to use
+     */
+    public void createReadOnlySession(Handler<AsyncResult<SQLSession>> handler) {
+        createReadOnlySession(new DaoScope(), handler);
+    }
+
+    /**
+     * Creates a new SQLSession on a replica registered in a scope, see {@link #createReadOnlySession(Handler)}
+     * @param scope The scope of the operation using this session
+     * @param handler The handler to use
+     */
+    public void createReadOnlySession(DaoScope scope, Handler<AsyncResult<SQLSession>> handler) {
+        if (replicas.isEmpty()) createSession(scope, handler);
+        else SQLSession.createSession(this, scope, replicas.pick(), handler);
     }
 
     /**
@@ -35,16 +571,132 @@ public class DaoManager {
      * @throws NoSuchMethodException Will be thrown if a default empty constructor didn't exist
      */
     public void registerDao(Class<? extends DAO> dao) throws NoSuchMethodException {
-        ObjectPool<DAO> pool = daoPools.get(dao);
-        if (pool == null) {
-            pool = new GenericObjectPool<>(new Factory(dao.getConstructor()));
-            daoPools.put(dao, pool);
+        getPool(dao);
+        for (DaoManager shard : shards) shard.registerDao(dao);
+    }
+
+    /**
+     * Register DAOs created by a factory instead of their empty constructor, for instance generated DAOs
+     * Does nothing if the DAO Class is already registered
+     * @param dao The dao Class to manage
+     * @param factory The factory creating new instances of the DAO Class
+     * @param <T> The DAO generic type
+     */
+    public <T extends DAO> void registerDao(Class<T> dao, Supplier<T> factory) {
+        forEachShard(shard -> shard.registerDao(dao, factory));
+        daoPools.computeIfAbsent(dao, d -> new DaoPool(factory, DaoPool.DEFAULT_MAX_IDLE_PER_THREAD));
+    }
+
+    /**
+     * Creates a loader executing one statement for a large number of rows, in chunks spread across several sessions
+     * @param query The statement executed for each row, usually an insert
+     * @return A loader to configure before calling one of its load methods
+     */
+    public BulkLoader createBulkLoader(String query) {
+        return new BulkLoader(this, query);
+    }
+
+    /**
+     * Creates a query executed over a range of keys as several sub range queries running in parallel
+     * @param query The query, its last two placeholders receive the lower (inclusive) and upper (exclusive) bounds
+     *              of a sub range
+     * @return A query to configure before calling one of its execute methods
+     */
+    public RangeQuery createRangeQuery(String query) {
+        return new RangeQuery(this, query);
+    }
+
+    /**
+     * Creates a warm-up opening connections, running warm-up queries and creating DAO instances before the first
+     * requests, see {@link #isReady()}
+     * @return A warm-up to configure before calling {@link WarmUp#run(Handler)}
+     */
+    public WarmUp createWarmUp() {
+        return new WarmUp(this);
+    }
+
+    /**
+     * @return true once a warm-up of this manager succeeded, useful for readiness probes
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    void setReady() {
+        ready = true;
+    }
+
+    /**
+     * Creates DAO instances of every registered class until the pools of the current thread hold count instances
+     * @param count The number of idle instances of each class
+     */
+    void prefillPools(int count) {
+        daoPools.forEach((dao, pool) -> {
+            int created = pool.prefill(count);
+            DaoMetrics metrics = this.metrics;
+            if (metrics != null) for (int i = 0; i < created; ++i) metrics.daoCreated(dao);
+        });
+    }
+
+    /**
+     * Declares the statements executed by a DAO class so they can be checked by {@link #validateStatements(Handler)}
+     * Generated DAOs declare their statements when they are registered
+     * @param dao The DAO class
+     * @param statements The SQL statements of the DAO class
+     */
+    public void declareStatements(Class<? extends DAO> dao, String... statements) {
+        declaredStatements.put(dao, Collections.unmodifiableList(new ArrayList<>(Arrays.asList(statements))));
+        forEachShard(shard -> shard.declareStatements(dao, statements));
+    }
+
+    /**
+     * Prepares every declared statement against the database, without executing it, so that invalid queries are
+     * detected at startup. The handler fails with a {@link java.sql.SQLException} listing every invalid statement.
+     * A sharded manager validates the statements on every shard
+     * @param handler The handler called once every statement has been prepared
+     */
+    public void validateStatements(Handler<AsyncResult<Void>> handler) {
+        if (!shards.isEmpty()) {
+            validateShards(0, handler);
+            return;
         }
+        Map<String, Class<? extends DAO>> statements = new LinkedHashMap<>();
+        declaredStatements.forEach((dao, queries) -> queries.forEach(query -> statements.putIfAbsent(query, dao)));
+        createSession(sessionResult -> {
+            if (sessionResult.failed()) {
+                handler.handle(Future.failedFuture(sessionResult.cause()));
+                return;
+            }
+            SQLSession session = sessionResult.result();
+            session.validateStatements(statements, result -> {
+                session.close();
+                handler.handle(result);
+            });
+        });
+    }
+
+    private void validateShards(int index, Handler<AsyncResult<Void>> handler) {
+        if (index == shards.size()) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        shards.get(index).validateStatements(result -> {
+            if (result.failed()) handler.handle(result);
+            else validateShards(index + 1, handler);
+        });
+    }
+
+    private DaoPool getPool(Class<? extends DAO> dao) throws NoSuchMethodException {
+        DaoPool pool = daoPools.get(dao);
+        if (pool != null) return pool;
+        DaoPool created = new DaoPool(DaoPool.constructorFactory(dao), DaoPool.DEFAULT_MAX_IDLE_PER_THREAD);
+        pool = daoPools.putIfAbsent(dao, created);
+        return pool == null ? created : pool;
     }
 
     /**
      * Creates a new instance of a DAO assigned to a unique session for this DAO
-     * The DAO is automatically closed after the handler finishes its actions
+     * The DAO is automatically closed if the handler, or a handler of one of its statements, throws an exception
      * It is strongly recommended to register the Dao Class before calling this method at the beginning og the
      * program using {@link #registerDao(Class)}
      * @param dao The dao Class to instantiate
@@ -52,43 +704,146 @@ public class DaoManager {
      * @param <T> The DAO generic type you want to instantiate
      */
     public <T extends DAO> void createDao(Class<T> dao, Handler<AsyncResult<T>> handler) {
+        createDao(new DaoScope(), dao, handler);
+    }
+
+    /**
+     * Creates a new instance of a DAO assigned to a unique session for this DAO, registered in a scope
+     * The DAO and its session are closed with the scope
+     * @param scope The scope of the operation using this DAO
+     * @param dao The dao Class to instantiate
+     * @param handler A handler to retrieve the created DAO
+     * @param <T> The DAO generic type you want to instantiate
+     */
+    public <T extends DAO> void createDao(DaoScope scope, Class<T> dao, Handler<AsyncResult<T>> handler) {
+        createDao(scope, dao, false, handler);
+    }
+
+    /**
+     * Creates a new instance of a DAO assigned to a unique session opened on a replica
+     * See {@link #createReadOnlySession(Handler)}, the writes of a DAO on a replica fail with an
+     * {@link IllegalStateException}
+     * @param dao The dao Class to instantiate
+     * @param handler A handler to retrieve the created DAO
+     * @param <T> The DAO generic type you want to instantiate
+     */
+    public <T extends DAO> void createReadOnlyDao(Class<T> dao, Handler<AsyncResult<T>> handler) {
+        createDao(new DaoScope(), dao, true, handler);
+    }
+
+    /**
+     * Creates a new instance of a DAO assigned to a unique session opened on a replica, registered in a scope
+     * See {@link #createReadOnlySession(Handler)}
+     * @param scope The scope of the operation using this DAO
+     * @param dao The dao Class to instantiate
+     * @param handler A handler to retrieve the created DAO
+     * @param <T> The DAO generic type you want to instantiate
+     */
+    public <T extends DAO> void createReadOnlyDao(DaoScope scope, Class<T> dao, Handler<AsyncResult<T>> handler) {
+        createDao(scope, dao, true, handler);
+    }
+
+    /**
+     * Creates a new instance of a DAO assigned to a unique session on the shard holding the data of a shard key
+     * The DAO is pooled by the manager of the shard
+     * @param shardKey The shard key
+     * @param dao The dao Class to instantiate
+     * @param handler A handler to retrieve the created DAO
+     * @param <T> The DAO generic type you want to instantiate
+     */
+    public <T extends DAO> void createDaoForShard(Object shardKey, Class<T> dao, Handler<AsyncResult<T>> handler) {
+        createDaoForShard(new DaoScope(), shardKey, dao, handler);
+    }
+
+    /**
+     * Creates a new instance of a DAO assigned to a unique session on the shard holding the data of a shard key,
+     * registered in a scope
+     * @param scope The scope of the operation using this DAO
+     * @param shardKey The shard key
+     * @param dao The dao Class to instantiate
+     * @param handler A handler to retrieve the created DAO
+     * @param <T> The DAO generic type you want to instantiate
+     */
+    public <T extends DAO> void createDaoForShard(DaoScope scope, Object shardKey, Class<T> dao,
+                                                 Handler<AsyncResult<T>> handler) {
+        DaoManager shard;
         try {
-            ObjectPool<DAO> pool = daoPools.get(dao);
-            if (pool == null) {
-                pool = new GenericObjectPool<>(new Factory(dao.getConstructor()));
-                daoPools.put(dao, pool);
+            shard = resolveShard(shardKey);
+        } catch (RuntimeException e) {
+            scope.guard(handler).handle(Future.failedFuture(e));
+            return;
+        }
+        shard.createDao(scope, dao, handler);
+    }
+
+    private <T extends DAO> void createDao(DaoScope scope, Class<T> dao, boolean readOnly,
+                                           Handler<AsyncResult<T>> handler) {
+        Handler<AsyncResult<T>> guarded = scope.guard(handler);
+        Bulkhead bulkhead = bulkheads.isEmpty() ? null : bulkheads.get(dao);
+        if (bulkhead == null) {
+            openDao(scope, dao, readOnly, null, guarded);
+            return;
+        }
+        bulkhead.acquire(permit -> {
+            if (permit.failed()) {
+                guarded.handle(Future.failedFuture(permit.cause()));
+                return;
             }
+            openDao(scope, dao, readOnly, bulkhead, guarded);
+        });
+    }
 
-            DAO instance = pool.borrowObject();
-            SQLSession.createSession(client, sessionResult -> {
+    private <T extends DAO> void openDao(DaoScope scope, Class<T> dao, boolean readOnly, Bulkhead bulkhead,
+                                         Handler<AsyncResult<T>> handler) {
+        try {
+            DaoPool pool = getPool(dao);
+            DAO instance = borrow(pool, dao);
+            Handler<AsyncResult<SQLSession>> sessionHandler = sessionResult -> {
                 if (sessionResult.failed()) {
+                    pool.release(instance);
+                    if (bulkhead != null) bulkhead.release();
                     handler.handle(Future.failedFuture(sessionResult.cause()));
                     return;
                 }
                 instance.setSession(sessionResult.result());
                 instance.setManager(this);
                 instance.setCloseSession(true);
-                addToClose(instance);
-                handler.handle(Future.succeededFuture((T) instance));
-            });
+                instance.setBulkhead(bulkhead);
+                register(scope, instance, handler);
+            };
+            if (readOnly) createReadOnlySession(scope, sessionHandler);
+            else if (client != null && isLazyConnections(dao)) LazySQLSession.create(client, this, scope, sessionHandler);
+            else createSession(scope, sessionHandler);
         } catch (Exception e) {
             logger.error("Exception catched for DAO " + dao, e);
+            if (bulkhead != null) bulkhead.release();
             handler.handle(Future.failedFuture(e));
         }
     }
 
-    private void addToClose(DAO instance) {
-        List<Closeable> toClose = Vertx.currentContext().get("hlvx.dao.toClose");
-        if (toClose == null) {
-            toClose = new CopyOnWriteArrayList<>();
-            Vertx.currentContext().put("hlvx.dao.toClose", toClose);
+    private DAO borrow(DaoPool pool, Class<? extends DAO> dao) {
+        DAO instance = pool.poll();
+        if (instance != null) return instance;
+        DaoMetrics metrics = this.metrics;
+        if (metrics != null) metrics.daoCreated(dao);
+        return pool.create();
+    }
+
+    private <T extends DAO> void register(DaoScope scope, DAO instance, Handler<AsyncResult<T>> handler) {
+        instance.setScope(scope);
+        if (!scope.register(instance)) {
+            instance.close();
+            handler.handle(Future.failedFuture(new IllegalStateException("Scope closed")));
+            return;
         }
-        toClose.add(instance);
+        LeakDetector leakDetector = this.leakDetector;
+        if (leakDetector != null) instance.setLeakDetector(leakDetector);
+        handler.handle(Future.succeededFuture((T) instance));
     }
 
     /**
      * Creates a new instance of a DAO assigned the associated SQLSession
-     * The DAO is automatically closed after the handler finishes its actions
+     * The DAO is registered in the scope of the session and closed with it
      * It is strongly recommended to register the Dao Class before calling this method at the beginning og the
      * program using {@link #registerDao(Class)}
      * @param session A valid SQLSession generated using {@link SQLSession#createSession(SQLClient, Handler)}
@@ -97,45 +852,65 @@ public class DaoManager {
      * @param <T> The DAO generic type you want to instantiate
      */
     public <T extends DAO> void createDao(SQLSession session, Class<T> dao, Handler<AsyncResult<T>> handler) {
+        Handler<AsyncResult<T>> guarded = session.getScope().guard(handler);
         try {
-            ObjectPool<DAO> pool = daoPools.get(dao);
-            if (pool == null) {
-                pool = new GenericObjectPool<>(new Factory(dao.getConstructor()));
-                daoPools.put(dao, pool);
-            }
-
-            DAO instance = pool.borrowObject();
+            DAO instance = borrow(getPool(dao), dao);
             instance.setSession(session);
             instance.setManager(this);
-            addToClose(instance);
-            handler.handle(Future.succeededFuture((T) instance));
+            register(session.getScope(), instance, guarded);
         } catch (Exception e) {
             logger.error("Exception catched for DAO " + dao, e);
-            handler.handle(Future.failedFuture(e));
+            guarded.handle(Future.failedFuture(e));
         }
     }
 
-    protected void returnDao(DAO dao) throws Exception {
-        ObjectPool<DAO> pool = daoPools.get(dao.getClass());
-        if (pool == null) throw new RuntimeException("Dao not registered");
-        pool.returnObject(dao);
+    boolean hasReplicas() {
+        return !replicas.isEmpty();
     }
 
-    private static class Factory extends BasePooledObjectFactory<DAO> {
-        private final Constructor<?> constructor;
-
-        public Factory(Constructor<?> constructor) {
-            this.constructor = constructor;
-        }
+    /**
+     * @return The replica to send the next query without session to
+     */
+    ReplicaBalancer.Replica pickReplica() {
+        return replicas.pick();
+    }
 
-        @Override
-        public DAO create() throws Exception {
-            return (DAO) constructor.newInstance();
+    /**
+     * Executes a query on a replica without holding a session, with the JDBC query timeout set when timeoutNanos is
+     * positive
+     * @param replica The replica picked with {@link #pickReplica()}
+     */
+    void queryReplica(ReplicaBalancer.Replica replica, Handler<AsyncResult<ResultSet>> consumer, long timeoutNanos,
+                      String query, Object... params) {
+        long start = System.nanoTime();
+        replica.begin();
+        Handler<AsyncResult<ResultSet>> handler = result -> {
+            replica.end();
+            replica.record(System.nanoTime() - start, result.failed());
+            consumer.handle(result);
+        };
+        if (timeoutNanos <= 0) {
+            replica.getClient().queryWithParams(query, new JsonArray(Arrays.asList(params)), handler);
+            return;
         }
+        replica.getClient().getConnection(connectionResult -> {
+            if (connectionResult.failed()) {
+                handler.handle(Future.failedFuture(connectionResult.cause()));
+                return;
+            }
+            SQLConnection connection = connectionResult.result();
+            connection.setOptions(new SQLOptions()
+                    .setQueryTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(timeoutNanos + 999_999_999))));
+            connection.queryWithParams(query, new JsonArray(Arrays.asList(params)), result -> {
+                connection.close();
+                handler.handle(result);
+            });
+        });
+    }
 
-        @Override
-        public PooledObject<DAO> wrap(DAO dao) {
-            return new DefaultPooledObject<>(dao);
-        }
+    protected void returnDao(DAO dao) throws Exception {
+        DaoPool pool = daoPools.get(dao.getClass());
+        if (pool == null) throw new RuntimeException("Dao not registered");
+        pool.release(dao);
     }
 }
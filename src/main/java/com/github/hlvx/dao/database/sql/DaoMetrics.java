@@ -0,0 +1,52 @@
+package com.github.hlvx.dao.database.sql;
+
+/**
+ * Listener receiving the metrics of a {@link DaoManager}, see {@link DaoManager#setMetrics(DaoMetrics)}
+ * Every method has an empty default implementation, so implementations only override what they record.
+ * Methods are called from event loop threads and must not block
+ */
+public interface DaoMetrics {
+    /**
+     * Called when a session obtained a connection from the SQL client
+     * @param nanos The time spent waiting for the connection
+     */
+    default void connectionAcquired(long nanos) {
+    }
+
+    /**
+     * Called when a session could not obtain a connection from the SQL client
+     * @param nanos The time spent waiting before the failure
+     * @param cause The failure
+     */
+    default void connectionFailed(long nanos, Throwable cause) {
+    }
+
+    /**
+     * Called when a session is opened
+     */
+    default void sessionOpened() {
+    }
+
+    /**
+     * Called when a session is closed
+     */
+    default void sessionClosed() {
+    }
+
+    /**
+     * Called when a DAO pool had no idle instance and created a new DAO
+     * @param dao The DAO class
+     */
+    default void daoCreated(Class<? extends DAO> dao) {
+    }
+
+    /**
+     * Called when a statement executed by a DAO completes
+     * @param dao The DAO class executing the statement
+     * @param query The SQL text of the statement
+     * @param nanos The time between the call and its completion
+     * @param failure The failure cause, or null if the statement succeeded
+     */
+    default void statementExecuted(Class<? extends DAO> dao, String query, long nanos, Throwable failure) {
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.hlvx.dao.database.sql;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Pool of DAO instances for one DAO class
+ * Idle instances are kept in a free list per thread, so borrowing and returning a DAO from an event loop never
+ * contends with other threads. A DAO returned on another thread than the one that borrowed it joins the free list of
+ * the returning thread. The pool never blocks, a new instance is created when the free list is empty
+ */
+class DaoPool {
+    static final int DEFAULT_MAX_IDLE_PER_THREAD = 64;
+    private final Supplier<? extends DAO> factory;
+    private final int maxIdlePerThread;
+    private final ThreadLocal<ArrayDeque<DAO>> idle = ThreadLocal.withInitial(ArrayDeque::new);
+    private final LongAdder created = new LongAdder();
+
+    DaoPool(Supplier<? extends DAO> factory, int maxIdlePerThread) {
+        this.factory = factory;
+        this.maxIdlePerThread = maxIdlePerThread;
+    }
+
+    /**
+     * Builds a factory calling the public empty constructor of a DAO class through a method handle
+     * @throws NoSuchMethodException Will be thrown if a default empty constructor didn't exist
+     */
+    static Supplier<DAO> constructorFactory(Class<? extends DAO> dao) throws NoSuchMethodException {
+        Constructor<? extends DAO> constructor = dao.getConstructor();
+        constructor.setAccessible(true);
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(DAO.class));
+        } catch (IllegalAccessException e) {
+            NoSuchMethodException exception = new NoSuchMethodException("Cannot access the constructor of " + dao);
+            exception.initCause(e);
+            throw exception;
+        }
+        return () -> {
+            try {
+                return (DAO) handle.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    /**
+     * @return An idle instance of the current thread, or null if there is none
+     */
+    DAO poll() {
+        return idle.get().pollFirst();
+    }
+
+    DAO create() {
+        created.increment();
+        return factory.get();
+    }
+
+    /**
+     * Creates instances until the current thread has count idle instances, or as many as it can keep
+     * @return The number of instances created
+     */
+    int prefill(int count) {
+        ArrayDeque<DAO> free = idle.get();
+        int target = Math.min(count, maxIdlePerThread);
+        int prefilled = 0;
+        for (; free.size() < target; ++prefilled) free.addLast(create());
+        return prefilled;
+    }
+
+    void release(DAO dao) {
+        ArrayDeque<DAO> free = idle.get();
+        if (free.size() < maxIdlePerThread) free.addFirst(dao);
+    }
+
+    /**
+     * @return The number of instances created by this pool
+     */
+    long getCreated() {
+        return created.sum();
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Groups the DAOs and sessions used by one operation (for instance one request) so they are released together
+ * Resources register when they are created and unregister when they are closed, both in constant time.
+ * If a handler called for a resource of the scope throws, every resource still registered is closed before the
+ * exception is propagated. Resources of other scopes are never affected
+ */
+public class DaoScope implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DaoScope.class);
+    private final Set<Closeable> resources = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean closed = false;
+
+    /**
+     * Registers a resource in this scope
+     * @param resource The resource to release with the scope
+     * @return false if the scope is already closed, the resource is not registered in that case
+     */
+    synchronized boolean register(Closeable resource) {
+        if (closed) return false;
+        resources.add(resource);
+        return true;
+    }
+
+    synchronized void unregister(Closeable resource) {
+        resources.remove(resource);
+    }
+
+    /**
+     * Wraps a handler so that an exception thrown by it closes this scope
+     */
+    <T> Handler<AsyncResult<T>> guard(Handler<AsyncResult<T>> handler) {
+        return result -> {
+            try {
+                handler.handle(result);
+            } catch (RuntimeException | Error e) {
+                fail(e);
+                throw e;
+            }
+        };
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes every resource still registered in this scope because of a failure
+     * @param cause The failure
+     */
+    public void fail(Throwable cause) {
+        logger.debug("Closing scope after failure", cause);
+        close();
+    }
+
+    /**
+     * Closes every resource still registered in this scope, resources can no longer be registered afterwards
+     */
+    @Override
+    public void close() {
+        List<Closeable> toClose;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(resources);
+            resources.clear();
+        }
+        for (Closeable resource : toClose) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                logger.error("Close error", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.hlvx.dao.database.sql;
+
+/**
+ * Spreads shard keys across shards by hash code
+ * The hash code is mixed before being reduced, so sequential numeric keys are spread evenly
+ */
+public class HashShardResolver implements ShardResolver {
+    @Override
+    public int resolve(Object shardKey, int shardCount) {
+        if (shardKey == null) throw new IllegalArgumentException("Shard key cannot be null");
+        int hash = shardKey.hashCode();
+        // Finalization step of MurmurHash3
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shardCount);
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.hlvx.dao.database.sql;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link DaoMetrics} implementation keeping every metric in memory
+ * Useful in tests or to expose the metrics through an existing monitoring endpoint
+ */
+public class InMemoryDaoMetrics implements DaoMetrics {
+    private final LatencyHistogram connectionAcquisition = new LatencyHistogram();
+    private final Map<Class<? extends DAO>, LatencyHistogram> daoLatencies = new ConcurrentHashMap<>();
+    private final Map<StatementKey, LatencyHistogram> statementLatencies = new ConcurrentHashMap<>();
+    private final Map<Class<? extends DAO>, LongAdder> daoErrors = new ConcurrentHashMap<>();
+    private final Map<Class<? extends DAO>, LongAdder> createdDaos = new ConcurrentHashMap<>();
+    private final LongAdder connectionErrors = new LongAdder();
+    private final LongAdder statementErrors = new LongAdder();
+    private final LongAdder openSessions = new LongAdder();
+
+    @Override
+    public void connectionAcquired(long nanos) {
+        connectionAcquisition.record(nanos);
+    }
+
+    @Override
+    public void connectionFailed(long nanos, Throwable cause) {
+        connectionAcquisition.record(nanos);
+        connectionErrors.increment();
+    }
+
+    @Override
+    public void sessionOpened() {
+        openSessions.increment();
+    }
+
+    @Override
+    public void sessionClosed() {
+        openSessions.decrement();
+    }
+
+    @Override
+    public void daoCreated(Class<? extends DAO> dao) {
+        createdDaos.computeIfAbsent(dao, d -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void statementExecuted(Class<? extends DAO> dao, String query, long nanos, Throwable failure) {
+        daoLatencies.computeIfAbsent(dao, d -> new LatencyHistogram()).record(nanos);
+        statementLatencies.computeIfAbsent(new StatementKey(dao, query), k -> new LatencyHistogram()).record(nanos);
+        if (failure != null) {
+            statementErrors.increment();
+            daoErrors.computeIfAbsent(dao, d -> new LongAdder()).increment();
+        }
+    }
+
+    public LatencyHistogram getConnectionAcquisition() {
+        return connectionAcquisition;
+    }
+
+    /**
+     * @return The latencies of every statement executed by this DAO class, or null if none has been executed
+     */
+    public LatencyHistogram getDaoLatency(Class<? extends DAO> dao) {
+        return daoLatencies.get(dao);
+    }
+
+    /**
+     * @return The latencies of a statement executed by a DAO class, or null if it has never been executed
+     */
+    public LatencyHistogram getStatementLatency(Class<? extends DAO> dao, String query) {
+        return statementLatencies.get(new StatementKey(dao, query));
+    }
+
+    public long getDaoErrors(Class<? extends DAO> dao) {
+        LongAdder errors = daoErrors.get(dao);
+        return errors == null ? 0 : errors.sum();
+    }
+
+    /**
+     * @return The number of instances created by the pool of this DAO class
+     */
+    public long getCreatedDaos(Class<? extends DAO> dao) {
+        LongAdder created = createdDaos.get(dao);
+        return created == null ? 0 : created.sum();
+    }
+
+    public long getConnectionErrors() {
+        return connectionErrors.sum();
+    }
+
+    public long getStatementErrors() {
+        return statementErrors.sum();
+    }
+
+    /**
+     * @return The number of sessions currently holding a connection
+     */
+    public long getOpenSessions() {
+        return openSessions.sum();
+    }
+
+    private static class StatementKey {
+        private final Class<? extends DAO> dao;
+        private final String query;
+
+        private StatementKey(Class<? extends DAO> dao, String query) {
+            this.dao = dao;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof StatementKey)) return false;
+            StatementKey other = (StatementKey) o;
+            return dao == other.dao && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * dao.hashCode() + query.hashCode();
+        }
+    }
+}
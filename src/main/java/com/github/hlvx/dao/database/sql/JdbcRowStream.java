@@ -0,0 +1,195 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.SQLRowStream;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Row stream reading a JDBC result set through the queue of its session
+ * Rows are read by batches of the fetch size, each batch being an operation of the queue, so the statements executed
+ * by the session while the stream is open run between two batches instead of concurrently with them.
+ * Only the first result set of the statement is streamed
+ */
+class JdbcRowStream implements SQLRowStream {
+    private static final int DEFAULT_BATCH_SIZE = 128;
+    private final SessionQueue queue;
+    private final PreparedStatement statement;
+    private final ResultSet rs;
+    private final List<String> columns;
+    private final int batchSize;
+    private final Deque<JsonArray> rows = new ArrayDeque<>();
+    private Handler<JsonArray> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+    private long demand = Long.MAX_VALUE;
+    private boolean reading = false;
+    private boolean exhausted = false;
+    private boolean closed = false;
+
+    private JdbcRowStream(SessionQueue queue, PreparedStatement statement, ResultSet rs, List<String> columns,
+                          int batchSize) {
+        this.queue = queue;
+        this.statement = statement;
+        this.rs = rs;
+        this.columns = columns;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Executes the query of a prepared statement, the statement is closed with the stream
+     * Called on a worker thread by an operation of the session queue
+     */
+    static JdbcRowStream open(SessionQueue queue, PreparedStatement statement, JsonArray params, int fetchSize)
+            throws SQLException {
+        try {
+            if (fetchSize > 0) statement.setFetchSize(fetchSize);
+            JdbcValues.fill(statement, params);
+            ResultSet rs = statement.executeQuery();
+            ResultSetMetaData metaData = rs.getMetaData();
+            List<String> columns = new ArrayList<>(metaData.getColumnCount());
+            for (int i = 1; i <= metaData.getColumnCount(); ++i) columns.add(metaData.getColumnLabel(i));
+            return new JdbcRowStream(queue, statement, rs, Collections.unmodifiableList(columns),
+                    fetchSize > 0 ? fetchSize : DEFAULT_BATCH_SIZE);
+        } catch (SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int column(String name) {
+        return columns.indexOf(name);
+    }
+
+    @Override
+    public List<String> columns() {
+        return columns;
+    }
+
+    @Override
+    public JdbcRowStream exceptionHandler(Handler<Throwable> handler) {
+        exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public JdbcRowStream handler(Handler<JsonArray> handler) {
+        this.handler = handler;
+        if (handler != null) drain();
+        return this;
+    }
+
+    @Override
+    public JdbcRowStream pause() {
+        demand = 0;
+        return this;
+    }
+
+    @Override
+    public JdbcRowStream resume() {
+        return fetch(Long.MAX_VALUE);
+    }
+
+    @Override
+    public JdbcRowStream fetch(long amount) {
+        if (amount <= 0) return this;
+        demand = Long.MAX_VALUE - demand < amount ? Long.MAX_VALUE : demand + amount;
+        drain();
+        return this;
+    }
+
+    @Override
+    public JdbcRowStream endHandler(Handler<Void> handler) {
+        endHandler = handler;
+        return this;
+    }
+
+    /**
+     * Ignored, the stream ends with the first result set
+     */
+    @Override
+    public JdbcRowStream resultSetClosedHandler(Handler<Void> handler) {
+        return this;
+    }
+
+    /**
+     * Ignored, the stream ends with the first result set
+     */
+    @Override
+    public void moreResults() {
+    }
+
+    @Override
+    public void close() {
+        close(closed -> {});
+    }
+
+    @Override
+    public void close(Handler<AsyncResult<Void>> handler) {
+        if (closed) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        closed = true;
+        rows.clear();
+        queue.execute(() -> {
+            try {
+                rs.close();
+            } finally {
+                statement.close();
+            }
+            return null;
+        }, handler);
+    }
+
+    /**
+     * Hands the buffered rows to the handler while there is demand, then reads the next batch or ends the stream
+     */
+    private void drain() {
+        while (!closed && handler != null && demand > 0 && !rows.isEmpty()) {
+            if (demand != Long.MAX_VALUE) --demand;
+            handler.handle(rows.poll());
+        }
+        if (closed || handler == null || !rows.isEmpty()) return;
+        if (exhausted) {
+            close(result -> {
+                if (endHandler != null) endHandler.handle(null);
+            });
+            return;
+        }
+        if (demand > 0) read();
+    }
+
+    private void read() {
+        if (reading) return;
+        reading = true;
+        queue.<List<JsonArray>>execute(() -> {
+            List<JsonArray> batch = new ArrayList<>(batchSize);
+            while (batch.size() < batchSize && rs.next()) batch.add(JdbcValues.row(rs, columns.size()));
+            return batch;
+        }, result -> {
+            reading = false;
+            if (closed) return;
+            if (result.failed()) {
+                close();
+                if (exceptionHandler != null) exceptionHandler.handle(result.cause());
+                return;
+            }
+            rows.addAll(result.result());
+            if (result.result().size() < batchSize) exhausted = true;
+            drain();
+        });
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
+
+/**
+ * Converts statement parameters and result values between JSON and JDBC for the statements a session executes
+ * directly on its JDBC connection. The conversions are the ones of the Vert.x JDBC client, so a statement returns the
+ * same values whether it goes through the client or not: temporal parameters given as ISO strings are bound as SQL
+ * dates, times and timestamps, and result values are converted to JSON compatible values
+ */
+final class JdbcValues {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcValues.class);
+    private static final Pattern DATETIME =
+            Pattern.compile("^\\d{4}-(?:0[0-9]|1[0-2])-[0-9]{2}T\\d{2}:\\d{2}:\\d{2}(\\.\\d{3,9})?Z$");
+    private static final Pattern DATE = Pattern.compile("^\\d{4}-(?:0[0-9]|1[0-2])-[0-9]{2}$");
+    private static final Pattern TIME = Pattern.compile("^\\d{2}:\\d{2}:\\d{2}$");
+
+    private JdbcValues() {
+    }
+
+    /**
+     * Binds the parameters of a statement
+     */
+    static void fill(PreparedStatement statement, JsonArray params) throws SQLException {
+        if (params == null) return;
+        for (int i = 0; i < params.size(); ++i) {
+            Object value = params.getValue(i);
+            statement.setObject(i + 1, value instanceof String ? cast((String) value) : value);
+        }
+    }
+
+    /**
+     * @return The SQL date, time or timestamp of an ISO string, or the string itself
+     */
+    private static Object cast(String value) {
+        try {
+            if (TIME.matcher(value).matches()) return new Time(local(LocalTime.parse(value).atDate(LocalDate.of(1970, 1, 1))
+                    .toInstant(ZoneOffset.UTC)));
+            if (DATE.matcher(value).matches())
+                return new Date(local(LocalDate.parse(value).atStartOfDay().toInstant(ZoneOffset.UTC)));
+            if (DATETIME.matcher(value).matches())
+                return Timestamp.from(Instant.from(DateTimeFormatter.ISO_INSTANT.parse(value)));
+        } catch (RuntimeException e) {
+            logger.debug("Cannot cast " + value, e);
+        }
+        return value;
+    }
+
+    /**
+     * @return The epoch milliseconds of the same wall clock time in the default time zone
+     */
+    private static long local(Instant instant) {
+        long millis = instant.toEpochMilli();
+        return millis - TimeZone.getDefault().getOffset(millis);
+    }
+
+    /**
+     * Reads every remaining row of a JDBC result set
+     */
+    static ResultSet toResultSet(java.sql.ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int count = metaData.getColumnCount();
+        List<String> columns = new ArrayList<>(count);
+        for (int i = 1; i <= count; ++i) columns.add(metaData.getColumnLabel(i));
+        List<JsonArray> results = new ArrayList<>();
+        while (rs.next()) results.add(row(rs, count));
+        return new ResultSet(columns, results, null);
+    }
+
+    /**
+     * Reads the current row of a JDBC result set
+     */
+    static JsonArray row(java.sql.ResultSet rs, int columns) throws SQLException {
+        JsonArray row = new JsonArray(new ArrayList<>(columns));
+        for (int i = 1; i <= columns; ++i) {
+            Object value = convert(rs.getObject(i));
+            if (value == null) row.addNull();
+            else row.add(value);
+        }
+        return row;
+    }
+
+    /**
+     * @return A value a JsonArray can hold
+     */
+    static Object convert(Object value) throws SQLException {
+        if (value == null || value instanceof Boolean || value instanceof String || value instanceof byte[]) return value;
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return decimal.scale() == 0 ? decimal.toBigInteger() : decimal.doubleValue();
+        }
+        if (value instanceof Number) return value;
+        if (value instanceof Time)
+            return ((Time) value).toLocalTime().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_LOCAL_TIME);
+        if (value instanceof Date) return ((Date) value).toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        if (value instanceof Timestamp) {
+            return OffsetDateTime.ofInstant(((Timestamp) value).toInstant(), ZoneOffset.UTC)
+                    .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        }
+        if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            try {
+                return clob.getSubString(1, (int) clob.length());
+            } finally {
+                clob.free();
+            }
+        }
+        if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            try {
+                return blob.getBytes(1, (int) blob.length());
+            } finally {
+                blob.free();
+            }
+        }
+        if (value instanceof Array) {
+            Array array = (Array) value;
+            try {
+                Object[] elements = (Object[]) array.getArray();
+                if (elements == null) return null;
+                JsonArray json = new JsonArray();
+                for (Object element : elements) json.add(convert(element));
+                return json;
+            } finally {
+                array.free();
+            }
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,267 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.UpdateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Session holding no connection between its statements, see {@link DaoManager#setLazyConnections(boolean)}
+ * Each statement runs on its own session, opened when the statement is executed and closed before its handler is
+ * called. Between {@link #startTransaction(Handler)} and {@link #commit(Handler)} or {@link #rollback(Handler)} the
+ * statements run on a pinned session holding the connection of the transaction
+ */
+class LazySQLSession extends SQLSession {
+    private static final Logger logger = LoggerFactory.getLogger(LazySQLSession.class);
+    private final SQLClient client;
+    private final DaoManager manager;
+    private SQLSession pinned;
+    private long connectionWaitNanos = 0;
+    private boolean closed = false;
+
+    private LazySQLSession(SQLClient client, DaoManager manager, DaoScope scope) {
+        super(scope);
+        this.client = client;
+        this.manager = manager;
+    }
+
+    /**
+     * Creates a lazy session registered in a scope, no connection is acquired so the handler is called right away
+     */
+    static void create(SQLClient client, DaoManager manager, DaoScope scope, Handler<AsyncResult<SQLSession>> handler) {
+        LazySQLSession session = new LazySQLSession(client, manager, scope);
+        if (!scope.register(session)) {
+            handler.handle(Future.failedFuture(new IllegalStateException("Scope closed")));
+            return;
+        }
+        handler.handle(Future.succeededFuture(session));
+    }
+
+    private void acquire(Handler<AsyncResult<SQLSession>> handler) {
+        SQLSession.createSession(client, manager, getScope(), result -> {
+            if (result.succeeded()) connectionWaitNanos = result.result().getConnectionWaitNanos();
+            handler.handle(result);
+        });
+    }
+
+    /**
+     * Runs a statement on the pinned session, or on a new session closed once the statement completes
+     */
+    private <T> void run(Handler<AsyncResult<T>> consumer, BiConsumer<SQLSession, Handler<AsyncResult<T>>> statement) {
+        if (closed) {
+            consumer.handle(Future.failedFuture(new IllegalStateException("Session closed")));
+            return;
+        }
+        if (pinned != null) {
+            statement.accept(pinned, consumer);
+            return;
+        }
+        acquire(acquired -> {
+            if (acquired.failed()) {
+                consumer.handle(Future.failedFuture(acquired.cause()));
+                return;
+            }
+            SQLSession session = acquired.result();
+            statement.accept(session, result -> {
+                session.close();
+                consumer.handle(result);
+            });
+        });
+    }
+
+    @Override
+    protected void executeUpdate(Handler<AsyncResult<UpdateResult>> consumer, String query, Object... params) {
+        run(consumer, (session, handler) -> session.executeUpdate(handler, query, params));
+    }
+
+    @Override
+    protected void executeUpdate(Handler<AsyncResult<UpdateResult>> consumer, long timeout, TimeUnit unit, String query,
+                                 Object... params) {
+        run(consumer, (session, handler) -> session.executeUpdate(handler, timeout, unit, query, params));
+    }
+
+    @Override
+    protected void executeBatch(Handler<AsyncResult<List<Integer>>> consumer, String query, JsonArray... args) {
+        run(consumer, (session, handler) -> session.executeBatch(handler, query, args));
+    }
+
+    @Override
+    protected void executeBatch(Handler<AsyncResult<List<Integer>>> consumer, long timeout, TimeUnit unit, String query,
+                                JsonArray... args) {
+        run(consumer, (session, handler) -> session.executeBatch(handler, timeout, unit, query, args));
+    }
+
+    @Override
+    protected void executeBatchCallable(Handler<AsyncResult<List<Integer>>> consumer, String query,
+                                        List<JsonArray> outputArgs, JsonArray... args) {
+        run(consumer, (session, handler) -> session.executeBatchCallable(handler, query, outputArgs, args));
+    }
+
+    @Override
+    protected void executeQuery(Handler<AsyncResult<ResultSet>> consumer, String query, Object... params) {
+        run(consumer, (session, handler) -> session.executeQuery(handler, query, params));
+    }
+
+    @Override
+    protected void executeQuery(Handler<AsyncResult<ResultSet>> consumer, long timeout, TimeUnit unit, String query,
+                                Object... params) {
+        run(consumer, (session, handler) -> session.executeQuery(handler, timeout, unit, query, params));
+    }
+
+    @Override
+    protected <T> void executeQueryAs(Handler<AsyncResult<List<T>>> consumer, Class<T> type, String query,
+                                      Object... params) {
+        run(consumer, (session, handler) -> session.executeQueryAs(handler, type, query, params));
+    }
+
+    @Override
+    protected void executeQueryColumnar(Handler<AsyncResult<ColumnarResult>> consumer, String query,
+                                        Object... params) {
+        run(consumer, (session, handler) -> session.executeQueryColumnar(handler, query, params));
+    }
+
+    @Override
+    public void executePipeline(Handler<AsyncResult<PipelineResult>> consumer, Pipeline pipeline) {
+        run(consumer, (session, handler) -> session.executePipeline(handler, pipeline));
+    }
+
+    @Override
+    void validateStatements(Map<String, Class<? extends DAO>> statements, Handler<AsyncResult<Void>> consumer) {
+        run(consumer, (session, handler) -> session.validateStatements(statements, handler));
+    }
+
+    @Override
+    void validate(int timeout, Handler<AsyncResult<Void>> consumer) {
+        run(consumer, (session, handler) -> session.validate(timeout, handler));
+    }
+
+    /**
+     * The connection of a stream outside of a transaction is held until the stream ends or fails
+     */
+    @Override
+    void executeQueryStream(Handler<AsyncResult<RowStream>> consumer, int fetchSize, Closeable resource,
+                            String query, Object... params) {
+        if (closed) {
+            consumer.handle(Future.failedFuture(new IllegalStateException("Session closed")));
+            return;
+        }
+        if (pinned != null) {
+            pinned.executeQueryStream(consumer, fetchSize, resource, query, params);
+            return;
+        }
+        acquire(acquired -> {
+            if (acquired.failed()) {
+                consumer.handle(Future.failedFuture(acquired.cause()));
+                return;
+            }
+            SQLSession session = acquired.result();
+            session.executeQueryStream(consumer, fetchSize, () -> {
+                session.close();
+                if (resource != null) resource.close();
+            }, query, params);
+        });
+    }
+
+    @Override
+    public void startTransaction(Handler<AsyncResult<Void>> handler) {
+        Handler<AsyncResult<Void>> consumer = getScope().guard(handler);
+        if (pinned != null) {
+            pinned.startTransaction(consumer);
+            return;
+        }
+        if (closed) {
+            consumer.handle(Future.failedFuture(new IllegalStateException("Session closed")));
+            return;
+        }
+        acquire(acquired -> {
+            if (acquired.failed()) {
+                consumer.handle(Future.failedFuture(acquired.cause()));
+                return;
+            }
+            SQLSession session = acquired.result();
+            pinned = session;
+            session.startTransaction(result -> {
+                if (result.failed()) unpin(session);
+                consumer.handle(result);
+            });
+        });
+    }
+
+    @Override
+    public void commit(Handler<AsyncResult<Void>> handler) {
+        SQLSession session = pinned;
+        if (session == null) {
+            getScope().guard(handler).handle(Future.failedFuture(new IllegalStateException("No transaction in progress")));
+            return;
+        }
+        session.commit(result -> {
+            unpin(session);
+            handler.handle(result);
+        });
+    }
+
+    @Override
+    public void rollback(Handler<AsyncResult<Void>> handler) {
+        SQLSession session = pinned;
+        if (session == null) {
+            getScope().guard(handler).handle(Future.failedFuture(new IllegalStateException("No transaction in progress")));
+            return;
+        }
+        session.rollback(result -> {
+            unpin(session);
+            handler.handle(result);
+        });
+    }
+
+    private void unpin(SQLSession session) {
+        if (pinned == session) pinned = null;
+        session.close();
+    }
+
+    @Override
+    public boolean isInTransaction() {
+        return pinned != null && pinned.isInTransaction();
+    }
+
+    @Override
+    void afterTransaction(Runnable hook) {
+        if (pinned != null) pinned.afterTransaction(hook);
+    }
+
+    /**
+     * @return The time the last statement of this session waited for its connection
+     */
+    @Override
+    long getConnectionWaitNanos() {
+        return connectionWaitNanos;
+    }
+
+    /**
+     * Rolls back and closes the pinned session, statements in progress close their own session when they complete
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        getScope().unregister(this);
+        if (pinned == null) return;
+        logger.warn("Lazy session closed during a transaction, the transaction is rolled back");
+        SQLSession session = pinned;
+        pinned = null;
+        session.rollback(result -> {
+            if (result.failed()) logger.error("Rollback error", result.cause());
+            session.close();
+        });
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects the DAOs and sessions that are still open long after they were created, usually because a handler forgot
+ * to close them. Every DAO and session created by a manager using this detector is tracked until it is closed, and a
+ * periodic check logs the ones older than the maximum age, with the stack trace of their creation when it was
+ * sampled, then forgets them so they are reported once. Leaked DAOs and sessions can be reclaimed: sessions are
+ * closed, so their connection goes back to the pool, and DAOs release their bulkhead permit, so the code still using
+ * them gets failures instead of silently exhausting the pool or the bulkhead.
+ * Leaked DAOs are never returned to their pool since the code that leaked them may still use them.
+ * See {@link DaoManager#setLeakDetector(LeakDetector)}
+ */
+public class LeakDetector implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(LeakDetector.class);
+    private final Vertx vertx;
+    private final long maxAgeNanos;
+    private final long timer;
+    private final Map<Object, Lease> leases = new ConcurrentHashMap<>();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder reclaimed = new LongAdder();
+    private volatile double stackTraceRate = 0.01;
+    private volatile boolean reclaim = false;
+
+    /**
+     * Creates a detector and starts its periodic check, every half of the maximum age
+     * @param vertx The Vert.x instance running the check
+     * @param maxAge The age from which an open DAO or session is considered leaked
+     * @param unit The time unit of maxAge
+     */
+    public LeakDetector(Vertx vertx, long maxAge, TimeUnit unit) {
+        if (maxAge <= 0) throw new IllegalArgumentException("Max age must be positive");
+        this.vertx = vertx;
+        this.maxAgeNanos = unit.toNanos(maxAge);
+        this.timer = vertx.setPeriodic(Math.max(1, unit.toMillis(maxAge) / 2), id -> check());
+    }
+
+    /**
+     * @param rate The fraction of the DAOs and sessions whose creation stack trace is captured, 0.01 by default.
+     *             Capturing a stack trace is expensive, a rate of 1 should only be used while debugging a leak
+     * @return This detector
+     */
+    public LeakDetector setStackTraceRate(double rate) {
+        if (rate < 0 || rate > 1) throw new IllegalArgumentException("Rate must be between 0 and 1");
+        this.stackTraceRate = rate;
+        return this;
+    }
+
+    /**
+     * @param reclaim true to close the leaked sessions and release the bulkhead permits of the leaked DAOs, false by
+     *                default
+     * @return This detector
+     */
+    public LeakDetector setReclaim(boolean reclaim) {
+        this.reclaim = reclaim;
+        return this;
+    }
+
+    /**
+     * @return The number of DAOs and sessions detected as leaked
+     */
+    public long getLeaks() {
+        return leaks.sum();
+    }
+
+    /**
+     * @return The number of leaked DAOs and sessions reclaimed by this detector
+     */
+    public long getReclaimed() {
+        return reclaimed.sum();
+    }
+
+    /**
+     * @return The number of DAOs and sessions open and not reported as leaked
+     */
+    public int getTracked() {
+        return leases.size();
+    }
+
+    void track(DAO dao) {
+        leases.put(dao, new Lease(dao.getClass().getName(), dao::reclaim, Vertx.currentContext(), sample()));
+    }
+
+    void track(SQLSession session, Context context) {
+        leases.put(session, new Lease(SQLSession.class.getSimpleName(), session::close, context, sample()));
+    }
+
+    void untrack(Object resource) {
+        leases.remove(resource);
+    }
+
+    private Throwable sample() {
+        double rate = stackTraceRate;
+        if (rate <= 0 || ThreadLocalRandom.current().nextDouble() >= rate) return null;
+        return new Throwable("Created here");
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        leases.forEach((resource, lease) -> {
+            if (now - lease.created < maxAgeNanos || leases.remove(resource) == null) return;
+            leaks.increment();
+            long age = TimeUnit.NANOSECONDS.toMillis(now - lease.created);
+            if (lease.creation != null) logger.warn("{} leaked, open for {}ms", lease.name, age, lease.creation);
+            else logger.warn("{} leaked, open for {}ms, increase the stack trace rate to find where it was created",
+                    lease.name, age);
+            if (!reclaim) return;
+            reclaimed.increment();
+            if (lease.context == null) lease.reclaim.run();
+            else lease.context.runOnContext(v -> lease.reclaim.run());
+        });
+    }
+
+    /**
+     * Stops the periodic check, the tracked DAOs and sessions are forgotten
+     */
+    @Override
+    public void close() {
+        vertx.cancelTimer(timer);
+        leases.clear();
+    }
+
+    private static class Lease {
+        private final String name;
+        private final Runnable reclaim;
+        private final Context context;
+        private final Throwable creation;
+        private final long created = System.nanoTime();
+
+        private Lease(String name, Runnable reclaim, Context context, Throwable creation) {
+            this.name = name;
+            this.reclaim = reclaim;
+            this.context = context;
+            this.creation = creation;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.json.JsonArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list of statements executed back to back on the connection of a session, see
+ * {@link SQLSession#executePipeline(io.vertx.core.Handler, Pipeline)}
+ * The results are returned together in a {@link PipelineResult}, in the order the statements were added
+ */
+public class Pipeline {
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Adds a query returning a {@link io.vertx.ext.sql.ResultSet}
+     * @param query The query to execute
+     * @param params The query parameters
+     * @return This pipeline
+     */
+    public Pipeline query(String query, Object... params) {
+        steps.add(new Step(query, new JsonArray(Arrays.asList(params)), false));
+        return this;
+    }
+
+    /**
+     * Adds an insert, update or delete returning an {@link io.vertx.ext.sql.UpdateResult}
+     * @param query The statement to execute
+     * @param params The statement parameters
+     * @return This pipeline
+     */
+    public Pipeline update(String query, Object... params) {
+        steps.add(new Step(query, new JsonArray(Arrays.asList(params)), true));
+        return this;
+    }
+
+    public int size() {
+        return steps.size();
+    }
+
+    List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Step step : steps) {
+            if (builder.length() > 0) builder.append("; ");
+            builder.append(step.query);
+        }
+        return builder.toString();
+    }
+
+    static class Step {
+        final String query;
+        final JsonArray params;
+        final boolean update;
+
+        private Step(String query, JsonArray params, boolean update) {
+            this.query = query;
+            this.params = params;
+            this.update = update;
+        }
+    }
+}
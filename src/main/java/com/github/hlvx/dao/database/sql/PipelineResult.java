@@ -0,0 +1,42 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.UpdateResult;
+
+import java.util.List;
+
+/**
+ * The results of the statements of a {@link Pipeline}, in the order the statements were added
+ */
+public class PipelineResult {
+    private final List<Object> results;
+
+    PipelineResult(List<Object> results) {
+        this.results = results;
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * @param index The index of a statement added with {@link Pipeline#query(String, Object...)}
+     * @return The result of the query
+     */
+    public ResultSet getResultSet(int index) {
+        Object result = results.get(index);
+        if (!(result instanceof ResultSet)) throw new IllegalArgumentException("Statement " + index + " is not a query");
+        return (ResultSet) result;
+    }
+
+    /**
+     * @param index The index of a statement added with {@link Pipeline#update(String, Object...)}
+     * @return The result of the update
+     */
+    public UpdateResult getUpdateResult(int index) {
+        Object result = results.get(index);
+        if (!(result instanceof UpdateResult))
+            throw new IllegalArgumentException("Statement " + index + " is not an update");
+        return (UpdateResult) result;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.hlvx.dao.database.sql;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the query executed by a method of a DAO interface, an implementation is generated by the hlvx-dao-processor
+ * annotation processor
+ * The method takes a {@code Handler<AsyncResult<ResultSet>>} or a {@code Handler<AsyncResult<List<T>>>}, see
+ * {@link DAO#executeQueryAs(io.vertx.core.Handler, Class, String, Object...)}. Its other parameters are bound to the
+ * placeholders of the query in declaration order
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Query {
+    /**
+     * @return The SQL query
+     */
+    String value();
+}
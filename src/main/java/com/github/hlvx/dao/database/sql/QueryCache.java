@@ -0,0 +1,173 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Read-through cache of query results, bounded by weight (number of cells) and invalidated by table
+ * Cached queries declare the tables they read, writes invalidate every entry depending on the tables they touch
+ */
+class QueryCache {
+    private static final String IDENTIFIER = "(?:\"[^\"]+\"|`[^`]+`|\\[[^\\]]+\\]|\\w+)";
+    private static final Pattern WRITE_PATTERN = Pattern.compile(
+            "^\\s*(?:INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|DELETE|MERGE\\s+INTO|REPLACE\\s+INTO|UPSERT\\s+INTO|TRUNCATE\\s+TABLE|TRUNCATE)\\s+("
+                    + IDENTIFIER + "(?:\\s*\\.\\s*" + IDENTIFIER + ")*)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern LAST_IDENTIFIER = Pattern.compile(IDENTIFIER + "$");
+    private final long maxWeight;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<String>> keysByTable = new HashMap<>();
+    private final Map<String, Long> tableVersions = new HashMap<>();
+    private long globalVersion = 0;
+    private long weight = 0;
+
+    QueryCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Builds the cache key of a query
+     * @return The key or null if the parameters cannot be used as a key
+     */
+    static String key(String query, Object[] params) {
+        try {
+            return query + '\u0000' + new JsonArray(Arrays.asList(params)).encode();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Extracts the table written by an INSERT, UPDATE, DELETE, MERGE or TRUNCATE statement
+     * @return The normalized table name or null if the statement is not recognized
+     */
+    static String writtenTable(String query) {
+        Matcher matcher = WRITE_PATTERN.matcher(query);
+        return matcher.find() ? normalize(matcher.group(1)) : null;
+    }
+
+    /**
+     * Normalizes a table name declared by a query or written by a statement so that both sides match: the catalog and
+     * schema are dropped, quotes are removed and the name is lower cased. Tables with the same name in different
+     * schemas therefore share their cached results, a write to one of them invalidates the others
+     * @return The unqualified, unquoted and lower case table name
+     */
+    static String normalize(String table) {
+        String name = table.trim();
+        Matcher matcher = LAST_IDENTIFIER.matcher(name);
+        if (matcher.find()) name = matcher.group();
+        return name.replaceAll("[\"`\\[\\]]", "").toLowerCase(Locale.ROOT);
+    }
+
+    synchronized ResultSet get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.expiration - System.nanoTime() <= 0) {
+            remove(key, entry);
+            return null;
+        }
+        return entry.resultSet;
+    }
+
+    /**
+     * @return A version that changes every time one of these tables is invalidated
+     */
+    synchronized long version(Collection<String> tables) {
+        long version = globalVersion;
+        for (String table : tables) version += tableVersions.getOrDefault(table, 0L);
+        return version;
+    }
+
+    /**
+     * Caches a result unless one of its tables has been invalidated since the query started
+     * @param version The version returned by {@link #version(Collection)} before executing the query
+     */
+    synchronized void put(String key, Collection<String> tables, ResultSet resultSet, long ttlNanos, long version) {
+        if (version(tables) != version) return;
+        long entryWeight = Math.max(1, (long) resultSet.getNumRows() * Math.max(1, resultSet.getNumColumns()));
+        if (entryWeight > maxWeight) return;
+        Entry previous = entries.get(key);
+        if (previous != null) remove(key, previous);
+        entries.put(key, new Entry(resultSet, tables, entryWeight, System.nanoTime() + ttlNanos));
+        for (String table : tables) keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+        weight += entryWeight;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            unindex(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * Removes every entry depending on one of these tables, or the whole cache if tables is null
+     */
+    synchronized void invalidate(Collection<String> tables) {
+        if (tables == null) {
+            globalVersion++;
+            entries.clear();
+            keysByTable.clear();
+            weight = 0;
+            return;
+        }
+        for (String table : tables) {
+            tableVersions.merge(table, 1L, Long::sum);
+            Set<String> keys = keysByTable.remove(table);
+            if (keys == null) continue;
+            for (String key : keys) {
+                Entry entry = entries.get(key);
+                if (entry != null) remove(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the table written by this statement, or the whole cache if the statement is not recognized
+     */
+    void invalidate(String query) {
+        String table = writtenTable(query);
+        invalidate(table == null ? null : Collections.singleton(table));
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        unindex(key, entry);
+    }
+
+    private void unindex(String key, Entry entry) {
+        weight -= entry.weight;
+        for (String table : entry.tables) {
+            Set<String> keys = keysByTable.get(table);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) keysByTable.remove(table);
+        }
+    }
+
+    private static class Entry {
+        private final ResultSet resultSet;
+        private final Collection<String> tables;
+        private final long weight;
+        private final long expiration;
+
+        private Entry(ResultSet resultSet, Collection<String> tables, long weight, long expiration) {
+            this.resultSet = resultSet;
+            this.tables = tables;
+            this.weight = weight;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Executes a query over a range of keys as several queries over sub ranges running in parallel on different sessions
+ * The last two placeholders of the query receive the lower (inclusive) and upper (exclusive) bounds of a sub range,
+ * for instance {@code SELECT * FROM events WHERE type = ? AND id >= ? AND id < ? ORDER BY id}.
+ * Sessions are opened with {@link DaoManager#createReadOnlySession(Handler)}, so sub ranges are spread across the
+ * replicas of the manager when it has some. Each sub range is read on its own connection, the sub ranges do not share a
+ * snapshot: a row written while the query runs can be seen by some sub ranges and missed by others.
+ * See {@link DaoManager#createRangeQuery(String)}
+ */
+public class RangeQuery {
+    private final DaoManager manager;
+    private final String query;
+    private int partitions = 4;
+    private int parallelism = 4;
+
+    RangeQuery(DaoManager manager, String query) {
+        this.manager = manager;
+        this.query = query;
+    }
+
+    /**
+     * @param partitions The number of sub ranges the range is split into, 4 by default
+     * @return This query
+     */
+    public RangeQuery setPartitions(int partitions) {
+        if (partitions <= 0) throw new IllegalArgumentException("Partitions must be positive");
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * @param parallelism The maximum number of sub ranges queried at the same time, 4 by default
+     * @return This query
+     */
+    public RangeQuery setParallelism(int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("Parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Executes the query over a range and merges the results of the sub ranges in order
+     * @param handler The handler receiving the rows of the whole range
+     * @param from The lower bound of the range, inclusive
+     * @param to The upper bound of the range, exclusive
+     * @param params The parameters of the query placed before the bounds
+     */
+    public void execute(Handler<AsyncResult<ResultSet>> handler, long from, long to, Object... params) {
+        List<ResultSet> results = new ArrayList<>();
+        stream(results::add, end -> {
+            if (end.failed()) {
+                handler.handle(Future.failedFuture(end.cause()));
+                return;
+            }
+            List<JsonArray> rows = new ArrayList<>();
+            for (ResultSet result : results) rows.addAll(result.getResults());
+            List<String> columns = results.isEmpty() ? Collections.emptyList() : results.get(0).getColumnNames();
+            handler.handle(Future.succeededFuture(new ResultSet(columns, rows, null)));
+        }, from, to, params);
+    }
+
+    /**
+     * Executes the query over a range and passes the result of each sub range as soon as it and every sub range before
+     * it are available, so that the rows are received in order without keeping the whole range in memory
+     * @param partitionHandler The handler receiving the result of each sub range, in order
+     * @param endHandler The handler called once every sub range is received, or with the first failure
+     * @param from The lower bound of the range, inclusive
+     * @param to The upper bound of the range, exclusive
+     * @param params The parameters of the query placed before the bounds
+     */
+    public void stream(Handler<ResultSet> partitionHandler, Handler<AsyncResult<Void>> endHandler, long from, long to,
+                       Object... params) {
+        new Execution(split(from, to), partitionHandler, endHandler, params).start();
+    }
+
+    /**
+     * @return The bounds of the sub ranges, sub range i goes from bounds[i] to bounds[i + 1]
+     */
+    long[] split(long from, long to) {
+        if (to <= from) return new long[0];
+        // The width of a wide range, up to Long.MIN_VALUE to Long.MAX_VALUE, only fits in an unsigned long. Every bound
+        // lies between from and to, so computing them modulo 2^64 gives their exact value
+        long width = to - from;
+        int count = Long.compareUnsigned(width, partitions) < 0 ? (int) width : partitions;
+        long step = Long.divideUnsigned(width, count);
+        long remainder = Long.remainderUnsigned(width, count);
+        long[] bounds = new long[count + 1];
+        for (int i = 0; i <= count; ++i) bounds[i] = from + step * i + Math.min(i, remainder);
+        return bounds;
+    }
+
+    /**
+     * One execution of the query, each session queries the next sub range until every sub range is queried
+     */
+    private class Execution {
+        private final long[] bounds;
+        private final Handler<ResultSet> partitionHandler;
+        private final Handler<AsyncResult<Void>> endHandler;
+        private final Object[] params;
+        private final ResultSet[] received;
+        private final List<SQLSession> sessions = new ArrayList<>();
+        private int next = 0;
+        private int emitted = 0;
+        private int running;
+        private Throwable failure;
+
+        private Execution(long[] bounds, Handler<ResultSet> partitionHandler, Handler<AsyncResult<Void>> endHandler,
+                          Object[] params) {
+            this.bounds = bounds;
+            this.partitionHandler = partitionHandler;
+            this.endHandler = endHandler;
+            this.params = Arrays.copyOf(params, params.length + 2);
+            this.received = new ResultSet[Math.max(0, bounds.length - 1)];
+        }
+
+        private void start() {
+            running = Math.min(parallelism, received.length);
+            if (running == 0) {
+                endHandler.handle(Future.succeededFuture());
+                return;
+            }
+            for (int i = 0, workers = running; i < workers; ++i) {
+                manager.createReadOnlySession(sessionResult -> {
+                    if (sessionResult.failed()) {
+                        if (failure == null) failure = sessionResult.cause();
+                        stopped();
+                        return;
+                    }
+                    sessions.add(sessionResult.result());
+                    next(sessionResult.result());
+                });
+            }
+        }
+
+        private void next(SQLSession session) {
+            if (failure != null || next == received.length) {
+                stopped();
+                return;
+            }
+            int partition = next++;
+            Object[] values = params.clone();
+            values[values.length - 2] = bounds[partition];
+            values[values.length - 1] = bounds[partition + 1];
+            session.executeQuery(result -> {
+                if (result.failed()) {
+                    if (failure == null) failure = result.cause();
+                    stopped();
+                    return;
+                }
+                received[partition] = result.result();
+                emit();
+                next(session);
+            }, query, values);
+        }
+
+        private void emit() {
+            while (failure == null && emitted < received.length && received[emitted] != null) {
+                ResultSet result = received[emitted];
+                received[emitted++] = null;
+                partitionHandler.handle(result);
+            }
+        }
+
+        private void stopped() {
+            if (--running > 0) return;
+            sessions.forEach(SQLSession::close);
+            if (failure != null) endHandler.handle(Future.failedFuture(failure));
+            else endHandler.handle(Future.succeededFuture());
+        }
+    }
+}
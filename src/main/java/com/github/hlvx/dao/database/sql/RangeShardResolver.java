@@ -0,0 +1,49 @@
+package com.github.hlvx.dao.database.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Assigns ranges of shard keys to shards
+ * Shard i holds the keys greater than or equal to its lower bound and lower than the lower bound of shard i + 1,
+ * keys lower than the first bound belong to the first shard. Shard keys must be instances of the class of the first
+ * bound, a key of another type is rejected instead of being compared to the bounds
+ * @param <K> The shard key type
+ */
+public class RangeShardResolver<K extends Comparable<? super K>> implements ShardResolver {
+    private final List<K> lowerBounds;
+    private final Class<?> keyType;
+
+    /**
+     * @param lowerBounds The lower bound of each shard, in increasing order, one per shard
+     */
+    public RangeShardResolver(List<K> lowerBounds) {
+        if (lowerBounds.isEmpty()) throw new IllegalArgumentException("At least one range is required");
+        keyType = lowerBounds.get(0).getClass();
+        for (int i = 1; i < lowerBounds.size(); ++i) {
+            if (!keyType.isInstance(lowerBounds.get(i)))
+                throw new IllegalArgumentException("Lower bounds must be instances of " + keyType.getName());
+            if (lowerBounds.get(i - 1).compareTo(lowerBounds.get(i)) >= 0)
+                throw new IllegalArgumentException("Lower bounds must be in increasing order");
+        }
+        this.lowerBounds = new ArrayList<>(lowerBounds);
+    }
+
+    @Override
+    public int resolve(Object shardKey, int shardCount) {
+        if (shardKey == null) throw new IllegalArgumentException("Shard key cannot be null");
+        if (lowerBounds.size() != shardCount)
+            throw new IllegalStateException(lowerBounds.size() + " ranges defined for " + shardCount + " shards");
+        if (!keyType.isInstance(shardKey)) {
+            throw new IllegalArgumentException("Shard key " + shardKey + " is a " + shardKey.getClass().getName()
+                    + ", the ranges are bounded by " + keyType.getName());
+        }
+        // Checked above, the key is an instance of the class of the first bound, which is a K
+        @SuppressWarnings("unchecked")
+        K key = (K) shardKey;
+        int index = Collections.binarySearch(lowerBounds, key);
+        // Not found: -(insertion point) - 1, the key belongs to the range before the insertion point
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+}
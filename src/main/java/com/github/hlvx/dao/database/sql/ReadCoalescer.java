@@ -0,0 +1,196 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.ResultSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Merges the point lookups of a statement issued within a short window into a single IN query
+ * The keys are de-duplicated, the rows of the query are grouped by their key column and each caller receives the rows
+ * of its own key. A window of 0 merges the lookups issued during the same event loop tick
+ */
+class ReadCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(ReadCoalescer.class);
+    private static final Pattern IN_PLACEHOLDER = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?\\s*\\)");
+    private final DaoManager manager;
+    private final long windowMillis;
+    private final int maxKeys;
+    private final Map<String, Batch> pending = new HashMap<>();
+
+    ReadCoalescer(DaoManager manager, long windowMillis, int maxKeys) {
+        this.manager = manager;
+        this.windowMillis = windowMillis;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Checks that a query has a single IN (?) placeholder receiving the keys
+     */
+    static void validate(String query) {
+        Matcher matcher = IN_PLACEHOLDER.matcher(query);
+        if (!matcher.find() || matcher.find())
+            throw new IllegalArgumentException("Query must contain exactly one IN (?) placeholder: " + query);
+    }
+
+    void submit(String query, String keyColumn, Object key, Handler<AsyncResult<List<JsonObject>>> consumer) {
+        Context context = manager.getContext();
+        if (context == null) {
+            consumer.handle(Future.failedFuture(new IllegalStateException(
+                    "Coalesced lookups are issued on a Vert.x context, see DaoManager#setVertx")));
+            return;
+        }
+        String id = query + '\u0000' + keyColumn;
+        Batch full = null;
+        synchronized (this) {
+            Batch batch = pending.get(id);
+            if (batch == null) {
+                batch = new Batch(id, query, keyColumn, context);
+                pending.put(id, batch);
+                Batch scheduled = batch;
+                if (windowMillis <= 0) context.runOnContext(v -> flush(scheduled));
+                else batch.timerId = context.owner().setTimer(windowMillis, timer -> flush(scheduled));
+            }
+            batch.add(key, consumer, context);
+            if (batch.keys.size() >= maxKeys) {
+                pending.remove(id);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            if (windowMillis > 0) full.context.owner().cancelTimer(full.timerId);
+            execute(full);
+        }
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            if (pending.get(batch.id) != batch) return;
+            pending.remove(batch.id);
+        }
+        execute(batch);
+    }
+
+    private void execute(Batch batch) {
+        List<Object> keys = new ArrayList<>(batch.keys.values());
+        // Pads the keys to a power of two so that the database sees a few distinct statements instead of one per size
+        int size = Integer.highestOneBit(keys.size());
+        if (size < keys.size()) size <<= 1;
+        Object last = keys.get(keys.size() - 1);
+        while (keys.size() < size) keys.add(last);
+        StringJoiner placeholders = new StringJoiner(", ", "IN (", ")");
+        for (int i = 0; i < keys.size(); ++i) placeholders.add("?");
+        String query = IN_PLACEHOLDER.matcher(batch.query).replaceFirst(placeholders.toString());
+        logger.debug("Loading {} coalesced keys for {} from {} lookups", batch.keys.size(), batch.query,
+                batch.consumers.size());
+        manager.createReadOnlySession(sessionResult -> {
+            if (sessionResult.failed()) {
+                batch.fail(sessionResult.cause());
+                return;
+            }
+            SQLSession session = sessionResult.result();
+            session.executeQuery(result -> {
+                session.close();
+                if (result.failed()) {
+                    batch.fail(result.cause());
+                    return;
+                }
+                try {
+                    batch.complete(group(result.result(), batch.keyColumn));
+                } catch (RuntimeException e) {
+                    batch.fail(e);
+                }
+            }, query, keys.toArray());
+        });
+    }
+
+    /**
+     * Groups the rows of a result by the normalized value of their key column
+     */
+    static Map<Object, List<JsonObject>> group(ResultSet resultSet, String keyColumn) {
+        int index = -1;
+        List<String> columns = resultSet.getColumnNames();
+        for (int i = 0; i < columns.size() && index < 0; ++i)
+            if (columns.get(i).equalsIgnoreCase(keyColumn)) index = i;
+        if (index < 0) throw new IllegalArgumentException("Key column " + keyColumn + " is not in the result");
+        Map<Object, List<JsonObject>> rows = new HashMap<>();
+        List<JsonArray> results = resultSet.getResults();
+        List<JsonObject> objects = resultSet.getRows();
+        for (int i = 0; i < results.size(); ++i)
+            rows.computeIfAbsent(normalize(results.get(i).getValue(index)), k -> new ArrayList<>(1))
+                    .add(objects.get(i));
+        return rows;
+    }
+
+    /**
+     * Makes the keys given by the callers and the keys read from the database comparable, an Integer key matching a
+     * BIGINT or NUMERIC column
+     */
+    static Object normalize(Object key) {
+        if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte
+                || key instanceof BigInteger || key instanceof BigDecimal)
+            return new BigDecimal(key.toString()).stripTrailingZeros();
+        return key;
+    }
+
+    private static class Batch {
+        private final String id;
+        private final String query;
+        private final String keyColumn;
+        private final Context context;
+        private final Map<Object, Object> keys = new LinkedHashMap<>();
+        private final List<Object> lookups = new ArrayList<>();
+        private final List<Handler<AsyncResult<List<JsonObject>>>> consumers = new ArrayList<>();
+        private final List<Context> contexts = new ArrayList<>();
+        private long timerId;
+
+        private Batch(String id, String query, String keyColumn, Context context) {
+            this.id = id;
+            this.query = query;
+            this.keyColumn = keyColumn;
+            this.context = context;
+        }
+
+        private void add(Object key, Handler<AsyncResult<List<JsonObject>>> consumer, Context context) {
+            Object normalized = normalize(key);
+            keys.putIfAbsent(normalized, key);
+            lookups.add(normalized);
+            consumers.add(consumer);
+            contexts.add(context);
+        }
+
+        private void complete(Map<Object, List<JsonObject>> rows) {
+            for (int i = 0; i < consumers.size(); ++i)
+                dispatch(i, Future.succeededFuture(rows.getOrDefault(lookups.get(i), Collections.emptyList())));
+        }
+
+        private void fail(Throwable cause) {
+            for (int i = 0; i < consumers.size(); ++i) dispatch(i, Future.failedFuture(cause));
+        }
+
+        private void dispatch(int index, AsyncResult<List<JsonObject>> result) {
+            Handler<AsyncResult<List<JsonObject>>> consumer = consumers.get(index);
+            Context target = contexts.get(index);
+            if (target == Vertx.currentContext()) consumer.handle(result);
+            else target.runOnContext(v -> consumer.handle(result));
+        }
+    }
+}
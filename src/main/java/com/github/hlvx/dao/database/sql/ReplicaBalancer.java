@@ -0,0 +1,93 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.ext.sql.SQLClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses the replica used by a read
+ * Each replica is scored by its number of outstanding reads multiplied by its average latency (exponentially
+ * weighted), the lowest score wins. A replica without any measure yet is always tried first, and the scan starts at
+ * a rotating index so equal scores are spread across replicas
+ */
+class ReplicaBalancer {
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaBalancer(List<? extends SQLClient> clients) {
+        for (SQLClient client : clients) replicas.add(new Replica(client));
+    }
+
+    boolean isEmpty() {
+        return replicas.isEmpty();
+    }
+
+    /**
+     * @return The replica with the lowest score, {@link Replica#begin()} must be called before using it
+     */
+    Replica pick() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        Replica best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < size; ++i) {
+            Replica replica = replicas.get((start + i) % size);
+            double score = replica.score();
+            if (score < bestScore) {
+                best = replica;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    static class Replica {
+        // Weight of a new latency sample in the moving average, 1 / 2^3
+        private static final int DECAY_SHIFT = 3;
+        // Latency recorded for a failure, so that a failing replica is not preferred for answering quickly
+        private static final long FAILURE_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private final SQLClient client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong latency = new AtomicLong();
+
+        private Replica(SQLClient client) {
+            this.client = client;
+        }
+
+        SQLClient getClient() {
+            return client;
+        }
+
+        void begin() {
+            outstanding.incrementAndGet();
+        }
+
+        /**
+         * Ends a read started by {@link #begin()}
+         */
+        void end() {
+            outstanding.decrementAndGet();
+        }
+
+        /**
+         * Adds a latency sample to the moving average of this replica
+         * @param nanos The latency of a query or of a connection acquisition
+         * @param failed true if the query or the connection acquisition failed
+         */
+        void record(long nanos, boolean failed) {
+            long sample = failed ? Math.max(FAILURE_NANOS, nanos) : Math.max(1, nanos);
+            latency.accumulateAndGet(sample, (average, value) ->
+                    average == 0 ? value : average + ((value - average) >> DECAY_SHIFT));
+        }
+
+        private double score() {
+            long average = latency.get();
+            if (average == 0) return 0;
+            return (double) average * (outstanding.get() + 1);
+        }
+    }
+}
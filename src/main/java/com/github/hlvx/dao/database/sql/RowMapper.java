@@ -0,0 +1,367 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.json.JsonArray;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the rows of a query to instances of a class, without building a JsonObject per row
+ * Columns are matched to the non static fields of the class by name, ignoring case and underscores, so the column
+ * user_name fills the field userName. Unmatched columns are ignored and unmatched fields keep their default value.
+ * A mapper is built once per class and column layout. It calls the field setters through method handles and reads
+ * primitive columns with the typed getters of the JDBC result set, so primitive fields are filled without boxing.
+ * LocalDateTime and LocalDate fields hold the wall clock time of the JVM default time zone, the zone the JDBC driver
+ * reads TIMESTAMP and DATE columns in, whether the row comes from the JDBC result set or from the Vert.x client
+ * @param <T> The mapped type
+ */
+final class RowMapper<T> {
+    private static final Map<Class<?>, Target<?>> targets = new ConcurrentHashMap<>();
+    private final Target<T> target;
+    private final Column[] columns;
+
+    private RowMapper(Target<T> target, Column[] columns) {
+        this.target = target;
+        this.columns = columns;
+    }
+
+    /**
+     * @param type The mapped class, it needs an empty constructor
+     * @param metaData The metadata of the result set to map
+     * @return The mapper of this class for the columns of the result set
+     */
+    static <T> RowMapper<T> of(Class<T> type, ResultSetMetaData metaData) throws SQLException {
+        List<String> labels = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); ++i) labels.add(metaData.getColumnLabel(i));
+        return of(type, labels);
+    }
+
+    /**
+     * @param type The mapped class, it needs an empty constructor
+     * @param labels The column labels of the rows to map
+     * @return The mapper of this class for these columns
+     */
+    static <T> RowMapper<T> of(Class<T> type, List<String> labels) {
+        // Every class is mapped to the target built for it
+        @SuppressWarnings("unchecked")
+        Target<T> target = (Target<T>) targets.computeIfAbsent(type, key -> new Target<>(type));
+        return target.mapper(labels);
+    }
+
+    /**
+     * Maps the current row of a JDBC result set
+     */
+    T map(ResultSet rs) throws SQLException {
+        T instance = target.newInstance();
+        try {
+            for (Column column : columns) column.read(instance, rs);
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+        return instance;
+    }
+
+    /**
+     * Maps every remaining row of a JDBC result set
+     */
+    List<T> mapAll(ResultSet rs) throws SQLException {
+        List<T> result = new ArrayList<>();
+        while (rs.next()) result.add(map(rs));
+        return result;
+    }
+
+    /**
+     * Maps a row already converted by the Vert.x SQL client, used when the JDBC result set is not available
+     */
+    T map(JsonArray row) {
+        T instance = target.newInstance();
+        try {
+            for (Column column : columns) column.set(instance, row.getValue(column.index - 1));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+        return instance;
+    }
+
+    List<T> mapAll(io.vertx.ext.sql.ResultSet resultSet) {
+        List<JsonArray> rows = resultSet.getResults();
+        List<T> result = new ArrayList<>(rows.size());
+        for (JsonArray row : rows) result.add(map(row));
+        return result;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The constructor and settable fields of a mapped class, with its mappers per column layout
+     */
+    private static class Target<T> {
+        private final Class<T> type;
+        private final MethodHandle constructor;
+        private final Map<String, Field> fields = new HashMap<>();
+        private final Map<List<String>, RowMapper<T>> mappers = new ConcurrentHashMap<>();
+
+        private Target(Class<T> type) {
+            this.type = type;
+            try {
+                Constructor<?> emptyConstructor = type.getDeclaredConstructor();
+                emptyConstructor.setAccessible(true);
+                constructor = MethodHandles.lookup().unreflectConstructor(emptyConstructor)
+                        .asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException(type + " needs an empty constructor to be mapped", e);
+            }
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) continue;
+                    fields.putIfAbsent(normalize(field.getName()), field);
+                }
+            }
+        }
+
+        private T newInstance() {
+            try {
+                return type.cast((Object) constructor.invokeExact());
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private RowMapper<T> mapper(List<String> labels) {
+            RowMapper<T> mapper = mappers.get(labels);
+            if (mapper != null) return mapper;
+            List<Column> columns = new ArrayList<>();
+            for (int i = 0; i < labels.size(); ++i) {
+                Field field = fields.get(normalize(labels.get(i)));
+                if (field != null) columns.add(Column.of(field, i + 1));
+            }
+            mapper = new RowMapper<>(this, columns.toArray(new Column[0]));
+            mappers.putIfAbsent(new ArrayList<>(labels), mapper);
+            return mapper;
+        }
+    }
+
+    /**
+     * Copies one column to one field
+     */
+    private abstract static class Column {
+        final int index;
+        final Class<?> type;
+        final MethodHandle setter;
+
+        private Column(int index, Class<?> type, MethodHandle setter) {
+            this.index = index;
+            this.type = type;
+            this.setter = setter;
+        }
+
+        static Column of(Field field, int index) {
+            field.setAccessible(true);
+            MethodHandle setter;
+            try {
+                setter = MethodHandles.lookup().unreflectSetter(field);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Cannot access " + field, e);
+            }
+            Class<?> type = field.getType();
+            MethodHandle generic = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            if (type == int.class) return new IntColumn(index, setter, generic);
+            if (type == long.class) return new LongColumn(index, setter, generic);
+            if (type == double.class) return new DoubleColumn(index, setter, generic);
+            if (type == boolean.class) return new BooleanColumn(index, setter, generic);
+            return new ObjectColumn(index, type, generic);
+        }
+
+        abstract void read(Object target, ResultSet rs) throws Throwable;
+
+        abstract void set(Object target, Object value) throws Throwable;
+    }
+
+    private static class IntColumn extends Column {
+        private final MethodHandle generic;
+
+        private IntColumn(int index, MethodHandle setter, MethodHandle generic) {
+            super(index, int.class, setter.asType(MethodType.methodType(void.class, Object.class, int.class)));
+            this.generic = generic;
+        }
+
+        @Override
+        void read(Object target, ResultSet rs) throws Throwable {
+            int value = rs.getInt(index);
+            if (!rs.wasNull()) setter.invokeExact(target, value);
+        }
+
+        @Override
+        void set(Object target, Object value) throws Throwable {
+            if (value != null) generic.invokeExact(target, (Object) ((Number) value).intValue());
+        }
+    }
+
+    private static class LongColumn extends Column {
+        private final MethodHandle generic;
+
+        private LongColumn(int index, MethodHandle setter, MethodHandle generic) {
+            super(index, long.class, setter.asType(MethodType.methodType(void.class, Object.class, long.class)));
+            this.generic = generic;
+        }
+
+        @Override
+        void read(Object target, ResultSet rs) throws Throwable {
+            long value = rs.getLong(index);
+            if (!rs.wasNull()) setter.invokeExact(target, value);
+        }
+
+        @Override
+        void set(Object target, Object value) throws Throwable {
+            if (value != null) generic.invokeExact(target, (Object) ((Number) value).longValue());
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private final MethodHandle generic;
+
+        private DoubleColumn(int index, MethodHandle setter, MethodHandle generic) {
+            super(index, double.class, setter.asType(MethodType.methodType(void.class, Object.class, double.class)));
+            this.generic = generic;
+        }
+
+        @Override
+        void read(Object target, ResultSet rs) throws Throwable {
+            double value = rs.getDouble(index);
+            if (!rs.wasNull()) setter.invokeExact(target, value);
+        }
+
+        @Override
+        void set(Object target, Object value) throws Throwable {
+            if (value != null) generic.invokeExact(target, (Object) ((Number) value).doubleValue());
+        }
+    }
+
+    private static class BooleanColumn extends Column {
+        private final MethodHandle generic;
+
+        private BooleanColumn(int index, MethodHandle setter, MethodHandle generic) {
+            super(index, boolean.class, setter.asType(MethodType.methodType(void.class, Object.class, boolean.class)));
+            this.generic = generic;
+        }
+
+        @Override
+        void read(Object target, ResultSet rs) throws Throwable {
+            boolean value = rs.getBoolean(index);
+            if (!rs.wasNull()) setter.invokeExact(target, value);
+        }
+
+        @Override
+        void set(Object target, Object value) throws Throwable {
+            if (value instanceof Number) value = ((Number) value).intValue() != 0;
+            if (value != null) generic.invokeExact(target, value);
+        }
+    }
+
+    /**
+     * Reference fields and the less common primitive fields, filled through boxed values
+     */
+    private static class ObjectColumn extends Column {
+        private ObjectColumn(int index, Class<?> type, MethodHandle generic) {
+            super(index, type, generic);
+        }
+
+        @Override
+        void read(Object target, ResultSet rs) throws Throwable {
+            Object value;
+            if (type == String.class) value = rs.getString(index);
+            else if (type == BigDecimal.class) value = rs.getBigDecimal(index);
+            else if (type == byte[].class) value = rs.getBytes(index);
+            else if (type == Instant.class) {
+                Timestamp timestamp = rs.getTimestamp(index);
+                value = timestamp == null ? null : timestamp.toInstant();
+            } else if (type == LocalDateTime.class) {
+                Timestamp timestamp = rs.getTimestamp(index);
+                value = timestamp == null ? null : timestamp.toLocalDateTime();
+            } else if (type == LocalDate.class) {
+                Date date = rs.getDate(index);
+                value = date == null ? null : date.toLocalDate();
+            } else value = convert(rs.getObject(index));
+            if (value != null || !type.isPrimitive()) setter.invokeExact(target, value);
+        }
+
+        @Override
+        void set(Object target, Object value) throws Throwable {
+            Object converted = convert(value);
+            if (converted != null || !type.isPrimitive()) setter.invokeExact(target, converted);
+        }
+
+        /**
+         * Converts a JDBC or Vert.x value to the type of the field
+         */
+        private Object convert(Object value) {
+            if (value == null) return null;
+            Class<?> boxed = boxed(type);
+            if (boxed.isInstance(value)) return value;
+            if (value instanceof Number) {
+                Number number = (Number) value;
+                if (boxed == Integer.class) return number.intValue();
+                if (boxed == Long.class) return number.longValue();
+                if (boxed == Double.class) return number.doubleValue();
+                if (boxed == Float.class) return number.floatValue();
+                if (boxed == Short.class) return number.shortValue();
+                if (boxed == Byte.class) return number.byteValue();
+                if (boxed == BigDecimal.class) return new BigDecimal(number.toString());
+                if (boxed == Boolean.class) return number.intValue() != 0;
+            }
+            if (value instanceof String) {
+                String string = (String) value;
+                if (type == Instant.class) return Instant.parse(string);
+                // The Vert.x client formats timestamps as UTC instants, and dates as timestamps for some drivers
+                if (type == LocalDateTime.class)
+                    return LocalDateTime.ofInstant(Instant.parse(string), ZoneId.systemDefault());
+                if (type == LocalDate.class) {
+                    if (string.length() == 10) return LocalDate.parse(string);
+                    return LocalDateTime.ofInstant(Instant.parse(string), ZoneId.systemDefault()).toLocalDate();
+                }
+                if (type == byte[].class) return Base64.getDecoder().decode(string);
+                if (type == BigDecimal.class) return new BigDecimal(string);
+            }
+            if (type == String.class) return value.toString();
+            throw new IllegalArgumentException("Cannot map " + value.getClass().getName() + " to " + type.getName());
+        }
+
+        private static Class<?> boxed(Class<?> type) {
+            if (!type.isPrimitive()) return type;
+            if (type == float.class) return Float.class;
+            if (type == short.class) return Short.class;
+            if (type == byte.class) return Byte.class;
+            if (type == char.class) return Character.class;
+            return type;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.sql.SQLRowStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Row by row view of a query result, backed by a {@link SQLRowStream}
+ * Rows are only read from the database when the stream is not paused, so the memory used does not depend on the
+ * number of rows returned.
+ * The resource given at creation (a DAO or a session) is released once, when the stream ends, fails or is closed
+ */
+public class RowStream implements ReadStream<JsonArray> {
+    private static final Logger logger = LoggerFactory.getLogger(RowStream.class);
+    private final SQLRowStream stream;
+    private final Closeable resource;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+    private boolean released = false;
+
+    RowStream(SQLRowStream stream, Closeable resource) {
+        this.stream = stream;
+        this.resource = resource;
+        stream.endHandler(v -> {
+            release();
+            if (endHandler != null) endHandler.handle(null);
+        });
+        stream.exceptionHandler(ex -> {
+            stream.close();
+            release();
+            if (exceptionHandler != null) exceptionHandler.handle(ex);
+            else logger.error("Unhandled row stream error", ex);
+        });
+    }
+
+    /**
+     * @return The column names of the streamed result set
+     */
+    public List<String> columns() {
+        return stream.columns();
+    }
+
+    @Override
+    public RowStream exceptionHandler(Handler<Throwable> handler) {
+        exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public RowStream handler(Handler<JsonArray> handler) {
+        stream.handler(handler);
+        return this;
+    }
+
+    @Override
+    public RowStream pause() {
+        stream.pause();
+        return this;
+    }
+
+    @Override
+    public RowStream resume() {
+        stream.resume();
+        return this;
+    }
+
+    @Override
+    public RowStream fetch(long amount) {
+        stream.fetch(amount);
+        return this;
+    }
+
+    @Override
+    public RowStream endHandler(Handler<Void> handler) {
+        endHandler = handler;
+        return this;
+    }
+
+    /**
+     * Stops reading rows and releases the underlying resource without calling the end handler
+     */
+    public void close() {
+        stream.close();
+        release();
+    }
+
+    private void release() {
+        if (released) return;
+        released = true;
+        if (resource == null) return;
+        try {
+            resource.close();
+        } catch (Exception e) {
+            logger.error("Close error", e);
+        }
+    }
+}
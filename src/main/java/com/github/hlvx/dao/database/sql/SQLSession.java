@@ -1,6 +1,7 @@
 package com.github.hlvx.dao.database.sql;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
@@ -8,84 +9,540 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLClient;
 import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLOptions;
+import io.vertx.ext.sql.SQLRowStream;
 import io.vertx.ext.sql.UpdateResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SQLSession implements Closeable {
     private static final Logger logger = LoggerFactory.getLogger(SQLSession.class);
     private final SQLConnection connection;
+    private final Context context;
+    private final StatementCache statementCache;
+    private final SessionQueue queue;
+    private final DaoMetrics metrics;
+    private final DaoScope scope;
+    private final ReplicaBalancer.Replica replica;
+    private final long connectionWaitNanos;
+    private SQLOptions options;
+    private boolean written = false;
+    private boolean inTransaction = false;
+    private List<Runnable> transactionHooks;
     private boolean closed = false;
+    private boolean expired = false;
+    private LeakDetector leakDetector;
 
-    private SQLSession(SQLConnection connection) {
+    private SQLSession(SQLConnection connection, Context context, StatementCache statementCache, DaoMetrics metrics,
+                       DaoScope scope, ReplicaBalancer.Replica replica, long connectionWaitNanos) {
         this.connection = connection;
+        this.context = context;
+        this.statementCache = statementCache;
+        this.queue = connection == null ? null : new SessionQueue(context);
+        this.metrics = metrics;
+        this.scope = scope;
+        this.replica = replica;
+        this.connectionWaitNanos = connectionWaitNanos;
+    }
+
+    /**
+     * Creates a session without connection, its subclass acquires connections itself, see {@link LazySQLSession}
+     */
+    SQLSession(DaoScope scope) {
+        this(null, Vertx.currentContext(), null, null, scope, null, 0);
     }
 
     /**
      * Creates a new SQLSession, useful when using multiple DAOs with the same session
+     * The session is closed if the handler, or a handler of a DAO using this session, throws an exception
      * @param client The SQL client to use
      * @param handler The handler to use
      */
     public static void createSession(SQLClient client, Handler<AsyncResult<SQLSession>> handler) {
+        createSession(client, null, new DaoScope(), handler);
+    }
+
+    /**
+     * Creates a new SQLSession registered in a scope, the session is closed with the scope
+     * @param client The SQL client to use
+     * @param scope The scope of the operation using this session
+     * @param handler The handler to use
+     */
+    public static void createSession(SQLClient client, DaoScope scope, Handler<AsyncResult<SQLSession>> handler) {
+        createSession(client, null, scope, handler);
+    }
+
+    /**
+     * Creates a new SQLSession on the shard of a sharded manager holding the data of a shard key
+     * @param manager The sharded manager, see {@link DaoManager#DaoManager(List, ShardResolver)}
+     * @param shardKey The shard key
+     * @param handler The handler to use
+     */
+    public static void createShardSession(DaoManager manager, Object shardKey, Handler<AsyncResult<SQLSession>> handler) {
+        manager.createShardSession(shardKey, handler);
+    }
+
+    /**
+     * Creates a new SQLSession using the settings of a manager
+     * @param client The SQL client to use
+     * @param manager The manager holding the session settings, can be null
+     * @param scope The scope of the operation using this session
+     * @param handler The handler to use
+     */
+    static void createSession(SQLClient client, DaoManager manager, DaoScope scope,
+                              Handler<AsyncResult<SQLSession>> handler) {
+        createSession(client, manager, scope, null, handler);
+    }
+
+    /**
+     * Creates a new read only SQLSession on a replica, the replica counts the session as outstanding until it is closed
+     * @param manager The manager holding the session settings
+     * @param scope The scope of the operation using this session
+     * @param replica The replica to use
+     * @param handler The handler to use
+     */
+    static void createSession(DaoManager manager, DaoScope scope, ReplicaBalancer.Replica replica,
+                              Handler<AsyncResult<SQLSession>> handler) {
+        createSession(replica.getClient(), manager, scope, replica, handler);
+    }
+
+    private static void createSession(SQLClient client, DaoManager manager, DaoScope scope,
+                                      ReplicaBalancer.Replica replica, Handler<AsyncResult<SQLSession>> handler) {
+        Handler<AsyncResult<SQLSession>> guarded = scope.guard(handler);
+        DaoMetrics metrics = manager == null ? null : manager.getMetrics();
+        long start = System.nanoTime();
+        if (replica != null) replica.begin();
         client.getConnection(connectionResult -> {
+            long wait = System.nanoTime() - start;
+            if (replica != null) replica.record(wait, connectionResult.failed());
             if (connectionResult.failed()) {
-                handler.handle(Future.failedFuture(connectionResult.cause()));
+                if (replica != null) replica.end();
+                if (metrics != null) metrics.connectionFailed(wait, connectionResult.cause());
+                guarded.handle(Future.failedFuture(connectionResult.cause()));
                 return;
             }
+            if (metrics != null) {
+                metrics.connectionAcquired(wait);
+                metrics.sessionOpened();
+            }
 
-            Vertx.currentContext().exceptionHandler(ex -> {
-                List<Closeable> toClose = Vertx.currentContext().get("hlvx.dao.toClose");
-                if (toClose != null) toClose.forEach(e -> {
-                    try {
-                        e.close();
-                    } catch (IOException exc) {
-                        logger.error("Close error", exc);
-                    }
-                });
-                Vertx.currentContext().remove("hlvx.dao.toClose");
-                throw new RuntimeException(ex);
-            });
-
-            SQLSession session = new SQLSession(connectionResult.result());
-            List<Closeable> toClose = Vertx.currentContext().get("hlvx.dao.toClose");
-            if (toClose == null) {
-                toClose = new CopyOnWriteArrayList<>();
-                Vertx.currentContext().put("hlvx.dao.toClose", toClose);
+            SQLConnection connection = connectionResult.result();
+            StatementCache statementCache = null;
+            if (manager != null && manager.isStatementCacheEnabled()) {
+                Object jdbcConnection = connection.unwrap();
+                if (jdbcConnection instanceof Connection)
+                    statementCache = manager.getStatementCache((Connection) jdbcConnection);
+            }
+            SQLSession session = new SQLSession(connection, Vertx.currentContext(), statementCache, metrics, scope,
+                    replica, wait);
+            if (!scope.register(session)) {
+                session.close();
+                guarded.handle(Future.failedFuture(new IllegalStateException("Scope closed")));
+                return;
+            }
+            LeakDetector leakDetector = manager == null ? null : manager.getLeakDetector();
+            if (leakDetector != null) {
+                session.leakDetector = leakDetector;
+                leakDetector.track(session, session.context);
             }
-            toClose.add(session);
-            handler.handle(Future.succeededFuture(session));
+            guarded.handle(Future.succeededFuture(session));
         });
     }
 
     protected void executeUpdate(Handler<AsyncResult<UpdateResult>> consumer, String query, Object... params) {
-        connection.updateWithParams(query, new JsonArray(Arrays.asList(params)), result -> {
-            if (result.failed()) {
-                consumer.handle(Future.failedFuture(result.cause()));
-                return;
-            }
-            consumer.handle(Future.succeededFuture(result.result()));
-        });
+        if (statementCache != null) {
+            executeCached(consumer, cache -> update(cache.prepare(query, true), new JsonArray(Arrays.asList(params))));
+            return;
+        }
+        queue.submit(done -> connection.updateWithParams(query, new JsonArray(Arrays.asList(params)), done), consumer);
     }
 
     protected void executeBatch(Handler<AsyncResult<List<Integer>>> consumer, String query, JsonArray... args) {
-        connection.batchWithParams(query, Arrays.asList(args), result -> {
+        if (statementCache != null) {
+            executeCached(consumer, cache -> {
+                PreparedStatement statement = cache.prepare(query, false);
+                statement.clearBatch();
+                return batch(statement, args);
+            });
+            return;
+        }
+        queue.submit(done -> connection.batchWithParams(query, Arrays.asList(args), done), consumer);
+    }
+
+    protected void executeBatchCallable(Handler<AsyncResult<List<Integer>>> consumer, String query, List<JsonArray> outputArgs,
+                                     JsonArray... args) {
+        queue.submit(done -> connection.batchCallableWithParams(query, Arrays.asList(args), outputArgs, done),
+                consumer);
+    }
+
+    protected void executeInsert(Handler<AsyncResult<UpdateResult>> consumer, String query, Object... params) {
+        executeUpdate(consumer, query, params);
+    }
+
+    protected void executeQuery(Handler<AsyncResult<ResultSet>> consumer, String query, Object... params) {
+        if (statementCache != null) {
+            executeCached(consumer, cache -> query(cache.prepare(query, false), new JsonArray(Arrays.asList(params))));
+            return;
+        }
+        queue.submit(done -> connection.queryWithParams(query, new JsonArray(Arrays.asList(params)), done), consumer);
+    }
+
+    /**
+     * Executes a query and maps each row to an instance of a class, see {@link DAO#executeQueryAs(Handler, Class, String, Object...)}
+     * On JDBC connections the rows are mapped directly from the JDBC result set on a worker thread
+     * @param consumer The handler receiving the mapped rows
+     * @param type The class of the rows, it needs an empty constructor
+     * @param query The query to execute
+     * @param params The query parameters
+     * @param <T> The row type
+     */
+    protected <T> void executeQueryAs(Handler<AsyncResult<List<T>>> consumer, Class<T> type, String query,
+                                      Object... params) {
+        JsonArray values = new JsonArray(Arrays.asList(params));
+        if (statementCache != null) {
+            executeCached(consumer, cache -> queryAs(cache.prepare(query, false), type, values));
+            return;
+        }
+        Connection jdbc = jdbc();
+        if (jdbc == null) {
+            queue.<ResultSet>submit(done -> connection.queryWithParams(query, values, done), result -> {
+                if (result.failed()) {
+                    consumer.handle(Future.failedFuture(result.cause()));
+                    return;
+                }
+                List<T> rows;
+                try {
+                    rows = RowMapper.of(type, result.result().getColumnNames()).mapAll(result.result());
+                } catch (RuntimeException e) {
+                    consumer.handle(Future.failedFuture(e));
+                    return;
+                }
+                consumer.handle(Future.succeededFuture(rows));
+            });
+            return;
+        }
+        queue.execute(() -> {
+            try (PreparedStatement statement = jdbc.prepareStatement(query)) {
+                return queryAs(statement, type, values);
+            }
+        }, consumer);
+    }
+
+    private static <T> List<T> queryAs(PreparedStatement statement, Class<T> type, JsonArray params) throws SQLException {
+        JdbcValues.fill(statement, params);
+        try (java.sql.ResultSet rs = statement.executeQuery()) {
+            return RowMapper.of(type, rs.getMetaData()).mapAll(rs);
+        }
+    }
+
+    /**
+     * Executes a query and stores its rows column by column, see {@link ColumnarResult}
+     * On JDBC connections the columns are filled directly from the JDBC result set on a worker thread, otherwise the
+     * result of the Vert.x SQL client is converted
+     * @param consumer The handler receiving the columns
+     * @param query The query to execute
+     * @param params The query parameters
+     */
+    protected void executeQueryColumnar(Handler<AsyncResult<ColumnarResult>> consumer, String query,
+                                        Object... params) {
+        JsonArray values = new JsonArray(Arrays.asList(params));
+        if (statementCache != null) {
+            executeCached(consumer, cache -> queryColumnar(cache.prepare(query, false), values));
+            return;
+        }
+        Connection jdbc = jdbc();
+        if (jdbc == null) {
+            queue.<ResultSet>submit(done -> connection.queryWithParams(query, values, done), result -> {
+                if (result.failed()) {
+                    consumer.handle(Future.failedFuture(result.cause()));
+                    return;
+                }
+                consumer.handle(Future.succeededFuture(ColumnarResult.of(result.result())));
+            });
+            return;
+        }
+        queue.execute(() -> {
+            try (PreparedStatement statement = jdbc.prepareStatement(query)) {
+                return queryColumnar(statement, values);
+            }
+        }, consumer);
+    }
+
+    private static ColumnarResult queryColumnar(PreparedStatement statement, JsonArray params) throws SQLException {
+        JdbcValues.fill(statement, params);
+        try (java.sql.ResultSet rs = statement.executeQuery()) {
+            return ColumnarResult.read(rs);
+        }
+    }
+
+    /**
+     * Prepares statements without executing them, see {@link DaoManager#validateStatements(Handler)}
+     * @param statements The statements to prepare with the DAO class declaring them
+     * @param consumer The handler failing with every invalid statement
+     */
+    void validateStatements(Map<String, Class<? extends DAO>> statements, Handler<AsyncResult<Void>> consumer) {
+        Connection jdbc = jdbc();
+        if (jdbc == null) {
+            consumer.handle(Future.failedFuture(new IllegalStateException("Statements can only be validated on JDBC connections")));
+            return;
+        }
+        queue.execute(() -> {
+            List<SQLException> failures = new ArrayList<>();
+            StringBuilder message = new StringBuilder("Invalid statements:");
+            statements.forEach((query, dao) -> {
+                try {
+                    jdbc.prepareStatement(query).close();
+                } catch (SQLException e) {
+                    failures.add(e);
+                    message.append("\n").append(dao.getName()).append(": ").append(query).append(" (")
+                            .append(e.getMessage()).append(')');
+                }
+            });
+            if (failures.isEmpty()) return null;
+            SQLException failure = new SQLException(message.toString());
+            failures.forEach(failure::addSuppressed);
+            throw failure;
+        }, consumer);
+    }
+
+    /**
+     * Checks that the connection of this session is still valid, see {@link Connection#isValid(int)}
+     * @param timeout The maximum number of seconds to wait for the database
+     * @param consumer The handler failing if the connection is not valid
+     */
+    void validate(int timeout, Handler<AsyncResult<Void>> consumer) {
+        Connection jdbc = jdbc();
+        if (jdbc == null) {
+            consumer.handle(Future.failedFuture(new IllegalStateException("Only JDBC connections can be validated")));
+            return;
+        }
+        queue.execute(() -> {
+            if (!jdbc.isValid(timeout)) throw new SQLException("Connection is not valid");
+            return null;
+        }, consumer);
+    }
+
+    /**
+     * Executes the statements of a pipeline back to back on the connection of this session and returns all their
+     * results together. On JDBC connections the statements run in a single worker task, without going back to the
+     * event loop between them. Execution stops at the first failure, which fails the whole pipeline; outside of a
+     * transaction the statements executed before the failure stay committed
+     * @param consumer The handler receiving the results
+     * @param pipeline The statements to execute
+     */
+    public void executePipeline(Handler<AsyncResult<PipelineResult>> consumer, Pipeline pipeline) {
+        List<Pipeline.Step> steps = pipeline.getSteps();
+        if (statementCache != null) {
+            executeCached(consumer, cache -> {
+                List<Object> results = new ArrayList<>(steps.size());
+                for (Pipeline.Step step : steps) {
+                    PreparedStatement statement = cache.prepare(step.query, step.update);
+                    results.add(step.update ? update(statement, step.params) : query(statement, step.params));
+                }
+                return new PipelineResult(results);
+            });
+            return;
+        }
+        Connection jdbc = jdbc();
+        if (jdbc == null) {
+            queue.submit(done -> executeChained(done, steps, new ArrayList<>(steps.size())), consumer);
+            return;
+        }
+        queue.execute(() -> {
+            List<Object> results = new ArrayList<>(steps.size());
+            for (Pipeline.Step step : steps) {
+                try (PreparedStatement statement = step.update
+                        ? jdbc.prepareStatement(step.query, Statement.RETURN_GENERATED_KEYS)
+                        : jdbc.prepareStatement(step.query)) {
+                    results.add(step.update ? update(statement, step.params) : query(statement, step.params));
+                }
+            }
+            return new PipelineResult(results);
+        }, consumer);
+    }
+
+    /**
+     * Executes the statements of a pipeline one after the other through the asynchronous connection, used when the
+     * connection does not expose a JDBC connection. The pipeline is a single operation of the session queue
+     */
+    private void executeChained(Handler<AsyncResult<PipelineResult>> consumer, List<Pipeline.Step> steps,
+                                List<Object> results) {
+        if (results.size() == steps.size()) {
+            consumer.handle(Future.succeededFuture(new PipelineResult(results)));
+            return;
+        }
+        Pipeline.Step step = steps.get(results.size());
+        Handler<AsyncResult<?>> next = result -> {
             if (result.failed()) {
                 consumer.handle(Future.failedFuture(result.cause()));
                 return;
             }
-            consumer.handle(Future.succeededFuture(result.result()));
-        });
+            results.add(result.result());
+            executeChained(consumer, steps, results);
+        };
+        if (step.update) connection.updateWithParams(step.query, step.params, next::handle);
+        else connection.queryWithParams(step.query, step.params, next::handle);
     }
 
-    protected void executeBatchCallable(Handler<AsyncResult<List<Integer>>> consumer, String query, List<JsonArray> outputArgs,
-                                     JsonArray... args) {
-        connection.batchCallableWithParams(query, Arrays.asList(args), outputArgs, result -> {
+    private static UpdateResult update(PreparedStatement statement, JsonArray params) throws SQLException {
+        JdbcValues.fill(statement, params);
+        int updated = statement.executeUpdate();
+        JsonArray keys = new JsonArray();
+        try (java.sql.ResultSet rs = statement.getGeneratedKeys()) {
+            while (rs.next()) {
+                Object key = rs.getObject(1);
+                if (key != null) keys.add(JdbcValues.convert(key));
+            }
+        }
+        return new UpdateResult(updated, keys);
+    }
+
+    private static ResultSet query(PreparedStatement statement, JsonArray params) throws SQLException {
+        JdbcValues.fill(statement, params);
+        try (java.sql.ResultSet rs = statement.executeQuery()) {
+            return JdbcValues.toResultSet(rs);
+        }
+    }
+
+    private static List<Integer> batch(PreparedStatement statement, JsonArray[] args) throws SQLException {
+        for (JsonArray arg : args) {
+            JdbcValues.fill(statement, arg);
+            statement.addBatch();
+        }
+        int[] counts = statement.executeBatch();
+        List<Integer> result = new ArrayList<>(counts.length);
+        for (int count : counts) result.add(count);
+        return result;
+    }
+
+    /**
+     * Executes a query with a deadline, see {@link #executeUpdate(Handler, long, TimeUnit, String, Object...)}
+     * @param consumer The handler receiving the result, or a {@link TimeoutException} once the deadline passed
+     * @param timeout The maximum duration of the query
+     * @param unit The time unit of timeout
+     * @param query The query to execute
+     * @param params The query parameters
+     */
+    protected void executeQuery(Handler<AsyncResult<ResultSet>> consumer, long timeout, TimeUnit unit, String query,
+                                Object... params) {
+        JsonArray values = new JsonArray(Arrays.asList(params));
+        executeWithin(consumer, unit.toNanos(timeout), query, false, statement -> query(statement, values),
+                handler -> connection.queryWithParams(query, values, handler));
+    }
+
+    /**
+     * Executes an update with a deadline. The JDBC query timeout of the statement is set to the timeout, and once
+     * the deadline passes the statement is cancelled and the consumer fails right away with a
+     * {@link TimeoutException}. The session is then expired: its following statements fail, and its connection is
+     * released as soon as the cancelled statement returns, without waiting for the session to be closed.
+     * A statement the driver cannot cancel may still complete after the deadline, its result is then ignored.
+     * Connections that are not JDBC connections only get the query timeout
+     * @param consumer The handler receiving the result, or a {@link TimeoutException} once the deadline passed
+     * @param timeout The maximum duration of the update
+     * @param unit The time unit of timeout
+     * @param query The update to execute
+     * @param params The update parameters
+     */
+    protected void executeUpdate(Handler<AsyncResult<UpdateResult>> consumer, long timeout, TimeUnit unit, String query,
+                                 Object... params) {
+        JsonArray values = new JsonArray(Arrays.asList(params));
+        executeWithin(consumer, unit.toNanos(timeout), query, true, statement -> update(statement, values),
+                handler -> connection.updateWithParams(query, values, handler));
+    }
+
+    /**
+     * Executes a batch with a deadline, see {@link #executeUpdate(Handler, long, TimeUnit, String, Object...)}
+     * @param consumer The handler receiving the update counts, or a {@link TimeoutException} once the deadline passed
+     * @param timeout The maximum duration of the batch
+     * @param unit The time unit of timeout
+     * @param query The statement to execute for each arguments
+     * @param args The arguments of each execution
+     */
+    protected void executeBatch(Handler<AsyncResult<List<Integer>>> consumer, long timeout, TimeUnit unit, String query,
+                                JsonArray... args) {
+        executeWithin(consumer, unit.toNanos(timeout), query, false, statement -> {
+            statement.clearBatch();
+            return batch(statement, args);
+        }, handler -> connection.batchWithParams(query, Arrays.asList(args), handler));
+    }
+
+    private <T> void executeWithin(Handler<AsyncResult<T>> consumer, long timeoutNanos, String query,
+                                   boolean update, StatementAction<T> action, Handler<Handler<AsyncResult<T>>> fallback) {
+        if (expired) {
+            consumer.handle(Future.failedFuture(new IllegalStateException("Session expired by a previous deadline")));
+            return;
+        }
+        int seconds = (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(timeoutNanos + 999_999_999));
+        Connection jdbc = jdbc();
+        if (jdbc == null) {
+            queue.submit(done -> {
+                SQLOptions previous = options;
+                setOptions((previous == null ? new SQLOptions() : new SQLOptions(previous)).setQueryTimeout(seconds));
+                fallback.handle(done);
+                // Options are read when the statement is created, the previous ones can be restored right away
+                setOptions(previous);
+            }, consumer);
+            return;
+        }
+        AtomicReference<Statement> running = new AtomicReference<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        // The deadline includes the time spent waiting behind the previous operations of the session
+        long timer = context.owner().setTimer(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)), id -> {
+            if (!completed.compareAndSet(false, true)) return;
+            expired = true;
+            // The release of the connection is queued behind the cancelled statement, the statements issued from now
+            // on fail right away
+            close();
+            Statement statement = running.get();
+            if (statement != null) {
+                // Outside of the session queue since the statement to cancel is the operation in progress
+                context.executeBlocking(future -> {
+                    try {
+                        statement.cancel();
+                    } catch (SQLException e) {
+                        logger.debug("Cannot cancel statement " + query, e);
+                    }
+                    future.complete();
+                }, false, cancelled -> {});
+            }
+            consumer.handle(Future.failedFuture(new TimeoutException("Statement did not complete within "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms: " + query)));
+        });
+        queue.<T>execute(() -> {
+            if (statementCache != null) {
+                synchronized (statementCache) {
+                    PreparedStatement statement = statementCache.prepare(query, update);
+                    try {
+                        return execute(statement, seconds, running, completed, action);
+                    } finally {
+                        statement.setQueryTimeout(0);
+                    }
+                }
+            }
+            try (PreparedStatement statement = update
+                    ? jdbc.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)
+                    : jdbc.prepareStatement(query)) {
+                return execute(statement, seconds, running, completed, action);
+            }
+        }, result -> {
+            context.owner().cancelTimer(timer);
+            if (!completed.compareAndSet(false, true)) return;
             if (result.failed()) {
                 consumer.handle(Future.failedFuture(result.cause()));
                 return;
@@ -94,32 +551,98 @@ public class SQLSession implements Closeable {
         });
     }
 
-    protected void executeInsert(Handler<AsyncResult<UpdateResult>> consumer, String query, Object... params) {
-        executeUpdate(consumer, query, params);
+    private static <T> T execute(PreparedStatement statement, int seconds, AtomicReference<Statement> running,
+                                 AtomicBoolean completed, StatementAction<T> action) throws SQLException {
+        statement.setQueryTimeout(seconds);
+        running.set(statement);
+        if (completed.get()) throw new SQLTimeoutException("Deadline passed before the statement started");
+        return action.execute(statement);
     }
 
-    protected void executeQuery(Handler<AsyncResult<ResultSet>> consumer, String query, Object... params) {
-        connection.queryWithParams(query, new JsonArray(Arrays.asList(params)), result -> {
+    /**
+     * Executes a query and streams its rows instead of loading the whole result set in memory
+     * @param consumer The handler receiving the row stream
+     * @param fetchSize The number of rows the driver fetches per round trip, 0 to use the driver default
+     * @param query The query to execute
+     * @param params The query parameters
+     */
+    protected void executeQueryStream(Handler<AsyncResult<RowStream>> consumer, int fetchSize, String query, Object... params) {
+        executeQueryStream(consumer, fetchSize, null, query, params);
+    }
+
+    void executeQueryStream(Handler<AsyncResult<RowStream>> consumer, int fetchSize, Closeable resource,
+                            String query, Object... params) {
+        JsonArray values = new JsonArray(Arrays.asList(params));
+        Handler<AsyncResult<SQLRowStream>> opened = result -> {
             if (result.failed()) {
+                if (resource != null) {
+                    try {
+                        resource.close();
+                    } catch (IOException e) {
+                        logger.error("Close error", e);
+                    }
+                }
                 consumer.handle(Future.failedFuture(result.cause()));
                 return;
             }
-            consumer.handle(Future.succeededFuture(result.result()));
-        });
+            consumer.handle(Future.succeededFuture(new RowStream(result.result(), resource)));
+        };
+        Connection jdbc = jdbc();
+        if (jdbc != null) {
+            // Not cached, the statement stays open until the stream ends
+            queue.execute(() -> JdbcRowStream.open(queue, jdbc.prepareStatement(query), values, fetchSize), opened);
+            return;
+        }
+        queue.submit(done -> {
+            SQLOptions previous = options;
+            if (fetchSize > 0) setOptions((previous == null ? new SQLOptions() : new SQLOptions(previous)).setFetchSize(fetchSize));
+            connection.queryStreamWithParams(query, values, done);
+            // Options are read when the statement is created, the previous ones can be restored right away
+            if (fetchSize > 0) setOptions(previous);
+        }, opened);
+    }
+
+    /**
+     * Runs a statement on a worker thread using the prepared statement cache of the connection
+     * The cache is shared with the other sessions using the same pooled connection, so its use is synchronized
+     */
+    private <T> void executeCached(Handler<AsyncResult<T>> consumer, CachedAction<T> action) {
+        queue.execute(() -> {
+            synchronized (statementCache) {
+                return action.execute(statementCache);
+            }
+        }, consumer);
+    }
+
+    /**
+     * @return The JDBC connection of this session, or null if its connection is not a JDBC connection
+     */
+    private Connection jdbc() {
+        Object jdbcConnection = connection.unwrap();
+        return jdbcConnection instanceof Connection ? (Connection) jdbcConnection : null;
+    }
+
+    private void setOptions(SQLOptions options) {
+        this.options = options;
+        connection.setOptions(options);
     }
 
-    public void startTransaction(Handler<AsyncResult<Void>> consumer) {
-        connection.setAutoCommit(false, result -> {
+    public void startTransaction(Handler<AsyncResult<Void>> handler) {
+        Handler<AsyncResult<Void>> consumer = scope.guard(handler);
+        queue.<Void>submit(done -> connection.setAutoCommit(false, done), result -> {
             if (result.failed()) {
                 consumer.handle(Future.failedFuture(result.cause()));
                 return;
             }
+            inTransaction = true;
             consumer.handle(Future.succeededFuture(result.result()));
         });
     }
 
-    public void commit(Handler<AsyncResult<Void>> consumer) {
-        connection.commit(result -> {
+    public void commit(Handler<AsyncResult<Void>> handler) {
+        Handler<AsyncResult<Void>> consumer = scope.guard(handler);
+        queue.<Void>submit(connection::commit, result -> {
+            runTransactionHooks();
             if (result.failed()) {
                 consumer.handle(Future.failedFuture(result.cause()));
                 return;
@@ -128,8 +651,10 @@ public class SQLSession implements Closeable {
         });
     }
 
-    public void rollback(Handler<AsyncResult<Void>> consumer) {
-        connection.rollback(result -> {
+    public void rollback(Handler<AsyncResult<Void>> handler) {
+        Handler<AsyncResult<Void>> consumer = scope.guard(handler);
+        queue.<Void>submit(connection::rollback, result -> {
+            runTransactionHooks();
             if (result.failed()) {
                 consumer.handle(Future.failedFuture(result.cause()));
                 return;
@@ -137,13 +662,94 @@ public class SQLSession implements Closeable {
             consumer.handle(Future.succeededFuture(result.result()));
         });
     }
+    /**
+     * @return The scope this session is registered in
+     */
+    public DaoScope getScope() {
+        return scope;
+    }
 
+    /**
+     * @return true if this session was opened on a replica, see {@link DaoManager#createReadOnlySession(Handler)}
+     */
+    public boolean isReadOnly() {
+        return replica != null;
+    }
+
+    /**
+     * @return The client of the replica this session was opened on, or null for a session on the primary
+     */
+    SQLClient getReplicaClient() {
+        return replica == null ? null : replica.getClient();
+    }
+
+    /**
+     * Marks this session as having written data, its DAOs then read from the primary to see their own writes
+     */
+    void markWritten() {
+        written = true;
+    }
+
+    boolean isWritten() {
+        return written;
+    }
+
+    /**
+     * @return The time this session waited for its connection
+     */
+    long getConnectionWaitNanos() {
+        return connectionWaitNanos;
+    }
+
+    /**
+     * @return true if {@link #startTransaction(Handler)} has been called on this session
+     */
+    public boolean isInTransaction() {
+        return inTransaction;
+    }
+
+    /**
+     * Registers an action to run when the current transaction is committed or rolled back
+     * The action is ignored if no transaction is in progress
+     */
+    void afterTransaction(Runnable hook) {
+        if (!inTransaction) return;
+        if (transactionHooks == null) transactionHooks = new ArrayList<>();
+        transactionHooks.add(hook);
+    }
+
+    private void runTransactionHooks() {
+        if (transactionHooks == null) return;
+        List<Runnable> hooks = transactionHooks;
+        transactionHooks = null;
+        hooks.forEach(Runnable::run);
+    }
+
+    /**
+     * Closes this session, its connection is released once the operations already submitted completed
+     */
     @Override
     public void close() {
         if (closed) return;
         closed = true;
-        connection.close(result -> {
-            if (result.failed()) throw new RuntimeException(result.cause());
-        });
+        scope.unregister(this);
+        if (leakDetector != null) leakDetector.untrack(this);
+        if (replica != null) replica.end();
+        if (metrics != null) metrics.sessionClosed();
+        // The cached statements stay open with the connection, the next session getting it from the pool reuses them
+        queue.shutdown(done -> connection.close(result -> {
+            if (result.failed()) logger.error("Close error", result.cause());
+            done.handle(result);
+        }));
+    }
+
+    @FunctionalInterface
+    private interface CachedAction<T> {
+        T execute(StatementCache cache) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface StatementAction<T> {
+        T execute(PreparedStatement statement) throws SQLException;
     }
 }
@@ -0,0 +1,112 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Runs the operations of a session on its connection one at a time, in the order they were submitted
+ * An operation starts once the previous one completed, whether it goes through the Vert.x SQL connection or runs
+ * directly on the JDBC connection on a worker thread, so a statement never overtakes a transaction boundary or runs
+ * concurrently with another statement of the session
+ */
+class SessionQueue {
+    private final Context context;
+    private final Deque<Runnable> operations = new ArrayDeque<>();
+    private boolean running = false;
+    private boolean shutdown = false;
+
+    SessionQueue(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Queues an asynchronous operation, the next operation starts when this one calls its completion handler
+     * @param operation The operation, receiving the handler to call on completion
+     * @param consumer The handler receiving the result of the operation
+     * @param <T> The result type
+     */
+    <T> void submit(Handler<Handler<AsyncResult<T>>> operation, Handler<AsyncResult<T>> consumer) {
+        boolean rejected;
+        synchronized (this) {
+            rejected = shutdown;
+            if (!rejected) {
+                operations.add(() -> start(operation, consumer));
+                if (running) return;
+                running = true;
+            }
+        }
+        if (rejected) {
+            consumer.handle(Future.failedFuture(new IllegalStateException("Session closed")));
+            return;
+        }
+        next();
+    }
+
+    /**
+     * Queues a blocking operation run on a worker thread
+     * @param action The operation
+     * @param consumer The handler receiving the result of the operation
+     * @param <T> The result type
+     */
+    <T> void execute(BlockingAction<T> action, Handler<AsyncResult<T>> consumer) {
+        submit(done -> context.<T>executeBlocking(future -> {
+            try {
+                future.complete(action.execute());
+            } catch (SQLException e) {
+                future.fail(e);
+            }
+        }, false, done), consumer);
+    }
+
+    /**
+     * Queues the last operation of the session, the operations submitted afterwards fail right away
+     * @param operation The operation
+     */
+    void shutdown(Handler<Handler<AsyncResult<Void>>> operation) {
+        submit(operation, done -> {});
+        synchronized (this) {
+            shutdown = true;
+        }
+    }
+
+    private <T> void start(Handler<Handler<AsyncResult<T>>> operation, Handler<AsyncResult<T>> consumer) {
+        boolean[] completed = {false};
+        Handler<AsyncResult<T>> done = result -> {
+            if (completed[0]) return;
+            completed[0] = true;
+            try {
+                consumer.handle(result);
+            } finally {
+                next();
+            }
+        };
+        try {
+            operation.handle(done);
+        } catch (RuntimeException e) {
+            done.handle(Future.failedFuture(e));
+        }
+    }
+
+    private void next() {
+        Runnable operation;
+        synchronized (this) {
+            operation = operations.poll();
+            if (operation == null) {
+                running = false;
+                return;
+            }
+        }
+        operation.run();
+    }
+
+    @FunctionalInterface
+    interface BlockingAction<T> {
+        T execute() throws SQLException;
+    }
+}
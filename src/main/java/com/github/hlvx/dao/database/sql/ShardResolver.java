@@ -0,0 +1,14 @@
+package com.github.hlvx.dao.database.sql;
+
+/**
+ * Resolves the shard holding the data of a shard key, see {@link DaoManager#DaoManager(java.util.List, ShardResolver)}
+ */
+@FunctionalInterface
+public interface ShardResolver {
+    /**
+     * @param shardKey The shard key, for instance a user id
+     * @param shardCount The number of shards of the manager
+     * @return The index of the shard, between 0 and shardCount - 1
+     */
+    int resolve(Object shardKey, int shardCount);
+}
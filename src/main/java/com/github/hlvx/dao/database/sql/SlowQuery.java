@@ -0,0 +1,99 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A statement recorded by a {@link SlowQueryLog}
+ */
+public class SlowQuery {
+    private final long timestamp;
+    private final Class<? extends DAO> dao;
+    private final String query;
+    private final String parameters;
+    private final long nanos;
+    private final long connectionWaitNanos;
+    private final String failure;
+    private volatile String plan;
+
+    SlowQuery(long timestamp, Class<? extends DAO> dao, String query, String parameters, long nanos,
+              long connectionWaitNanos, Throwable failure) {
+        this.timestamp = timestamp;
+        this.dao = dao;
+        this.query = query;
+        this.parameters = parameters;
+        this.nanos = nanos;
+        this.connectionWaitNanos = connectionWaitNanos;
+        this.failure = failure == null ? null : String.valueOf(failure.getMessage());
+    }
+
+    /**
+     * @return The time the statement completed, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Class<? extends DAO> getDao() {
+        return dao;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return The types of the parameters of the statement, for instance (Integer, String, null), their values are
+     * not recorded
+     */
+    public String getParameters() {
+        return parameters;
+    }
+
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The time the session of the DAO waited for its connection
+     */
+    public long getConnectionWait(TimeUnit unit) {
+        return unit.convert(connectionWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The message of the failure of the statement, or null if it succeeded
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return The execution plan of the statement, or null if it was not sampled or its plan is not received yet
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+                .put("timestamp", timestamp)
+                .put("dao", dao.getName())
+                .put("query", query)
+                .put("parameters", parameters)
+                .put("durationMicros", TimeUnit.NANOSECONDS.toMicros(nanos))
+                .put("connectionWaitMicros", TimeUnit.NANOSECONDS.toMicros(connectionWaitNanos))
+                .put("failure", failure)
+                .put("plan", plan);
+    }
+
+    @Override
+    public String toString() {
+        return dao.getSimpleName() + " " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms " + query + " " + parameters;
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.SQLClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the DAO statements slower than a threshold in a bounded buffer, the oldest entries being replaced by the new
+ * ones. A sampled subset of the slow queries can be explained: the query prefixed with the explain prefix is sent on
+ * another connection to the database it ran on, the primary or a replica, and its result is attached to the entry as
+ * its plan.
+ * See {@link DaoManager#setSlowQueryLog(SlowQueryLog)}
+ */
+public class SlowQueryLog {
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+    private final long thresholdNanos;
+    private final SlowQuery[] entries;
+    private final LongAdder recorded = new LongAdder();
+    private int next = 0;
+    private int size = 0;
+    private volatile String explainPrefix;
+    private volatile double explainRate;
+
+    /**
+     * @param threshold The duration from which a statement is recorded
+     * @param unit The time unit of threshold
+     * @param capacity The maximum number of entries kept
+     */
+    public SlowQueryLog(long threshold, TimeUnit unit, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.entries = new SlowQuery[capacity];
+    }
+
+    /**
+     * Explains a sampled subset of the slow queries. Writes, batches, pipelines and coalesced lookups are never
+     * explained. Use a prefix that does not execute the query, for instance EXPLAIN on MySQL and PostgreSQL, not
+     * EXPLAIN ANALYZE
+     * @param prefix The prefix turning a statement into its explain statement, for instance "EXPLAIN "
+     * @param rate The fraction of the slow statements to explain, between 0 and 1
+     * @return This log
+     */
+    public SlowQueryLog setExplain(String prefix, double rate) {
+        if (rate < 0 || rate > 1) throw new IllegalArgumentException("Rate must be between 0 and 1");
+        this.explainPrefix = prefix;
+        this.explainRate = rate;
+        return this;
+    }
+
+    /**
+     * @return The duration from which a statement is recorded
+     */
+    public long getThreshold(TimeUnit unit) {
+        return unit.convert(thresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * @return The number of slow statements recorded since the creation of this log, including the replaced ones
+     */
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    /**
+     * @return The entries kept, from the oldest to the newest
+     */
+    public synchronized List<SlowQuery> getEntries() {
+        List<SlowQuery> list = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) list.add(entries[(next - size + i + entries.length) % entries.length]);
+        return list;
+    }
+
+    /**
+     * @return The entries of one DAO class, from the oldest to the newest
+     */
+    public List<SlowQuery> getEntries(Class<? extends DAO> dao) {
+        List<SlowQuery> list = getEntries();
+        list.removeIf(entry -> entry.getDao() != dao);
+        return list;
+    }
+
+    /**
+     * @return The entries kept as JSON objects, from the oldest to the newest
+     */
+    public JsonArray export() {
+        JsonArray array = new JsonArray();
+        for (SlowQuery entry : getEntries()) array.add(entry.toJson());
+        return array;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(entries, null);
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Records a statement that took longer than the threshold
+     * @param client The client the statement ran on, used to explain it, or null to not explain it
+     * @param params The parameters of a statement, the arguments of a batch, or null for a pipeline
+     */
+    void record(SQLClient client, Class<? extends DAO> dao, String query, Object params, long nanos,
+                long connectionWaitNanos, Throwable failure) {
+        SlowQuery entry = new SlowQuery(System.currentTimeMillis(), dao, query, shape(params), nanos,
+                connectionWaitNanos, failure);
+        recorded.increment();
+        synchronized (this) {
+            entries[next] = entry;
+            next = (next + 1) % entries.length;
+            if (size < entries.length) ++size;
+        }
+        logger.debug("Slow statement {}", entry);
+        String prefix = explainPrefix;
+        if (prefix == null || client == null || !(params instanceof Object[])
+                || ThreadLocalRandom.current().nextDouble() >= explainRate) return;
+        explain(client, entry, prefix + query, new JsonArray(Arrays.asList((Object[]) params)));
+    }
+
+    /**
+     * Runs an explain statement with the parameters of the statement, then without parameters when it fails since
+     * some databases explain statements with unbound placeholders only
+     */
+    private static void explain(SQLClient client, SlowQuery entry, String explain, JsonArray params) {
+        client.queryWithParams(explain, params, result -> {
+            if (result.failed() && !params.isEmpty()) {
+                explain(client, entry, explain, new JsonArray());
+                return;
+            }
+            if (result.failed()) {
+                entry.setPlan("EXPLAIN failed: " + result.cause().getMessage());
+                return;
+            }
+            StringJoiner plan = new StringJoiner("\n");
+            for (JsonArray row : result.result().getResults()) {
+                StringJoiner line = new StringJoiner(" | ");
+                for (Object value : row) line.add(String.valueOf(value));
+                plan.add(line.toString());
+            }
+            entry.setPlan(plan.toString());
+        });
+    }
+
+    /**
+     * @return The types of the parameters, or the number of rows and the types of the first row of a batch
+     */
+    private static String shape(Object params) {
+        if (params instanceof Object[]) return shape(Arrays.asList((Object[]) params));
+        if (params instanceof JsonArray[]) {
+            JsonArray[] rows = (JsonArray[]) params;
+            return rows.length + " x " + (rows.length == 0 ? "()" : shape(rows[0].getList()));
+        }
+        return "";
+    }
+
+    private static String shape(List<?> params) {
+        StringJoiner shape = new StringJoiner(", ", "(", ")");
+        for (Object param : params) shape.add(param == null ? "null" : param.getClass().getSimpleName());
+        return shape.toString();
+    }
+}
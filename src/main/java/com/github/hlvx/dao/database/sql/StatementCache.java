@@ -0,0 +1,104 @@
+package com.github.hlvx.dao.database.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of prepared statements keyed by SQL text
+ * A cache is bound to a physical JDBC connection of the pool and lives as long as the connection, see
+ * {@link DaoManager#getStatementCache(Connection)}. It is not thread safe, callers must synchronize on it
+ */
+class StatementCache {
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+    private final Connection connection;
+    private final StatementCacheStats stats;
+    private final Statements statements;
+
+    StatementCache(Connection connection, int maxSize, StatementCacheStats stats) {
+        this.connection = connection;
+        this.stats = stats;
+        this.statements = new Statements(maxSize);
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return true if the connection of this cache was closed, its statements are then closed as well
+     */
+    boolean isClosed() {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns the cached statement for this query, preparing it on a miss
+     * @param query The SQL text
+     * @param generatedKeys true if the statement has to return the generated keys
+     * @return A prepared statement ready to be filled
+     * @throws SQLException If the statement cannot be prepared
+     */
+    PreparedStatement prepare(String query, boolean generatedKeys) throws SQLException {
+        CachedStatement cached = statements.get(query);
+        if (cached != null && cached.generatedKeys == generatedKeys && !cached.statement.isClosed()) {
+            stats.hit();
+            return cached.statement;
+        }
+        stats.miss();
+        if (cached != null) close(cached.statement);
+        PreparedStatement statement = generatedKeys
+                ? connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(query);
+        statements.put(query, new CachedStatement(statement, generatedKeys));
+        return statement;
+    }
+
+    private static void close(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.error("Statement close error", e);
+        }
+    }
+
+    /**
+     * Statements in access order, closing the least recently used one when the cache is full
+     */
+    private static class Statements extends LinkedHashMap<String, CachedStatement> {
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        private Statements(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+            if (size() <= maxSize) return false;
+            close(eldest.getValue().statement);
+            return true;
+        }
+    }
+
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private final boolean generatedKeys;
+
+        private CachedStatement(PreparedStatement statement, boolean generatedKeys) {
+            this.statement = statement;
+            this.generatedKeys = generatedKeys;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.hlvx.dao.database.sql;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit and miss counters of the prepared statement caches created by a {@link DaoManager}
+ */
+public class StatementCacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    /**
+     * @return The number of statements served from a cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of statements that had to be prepared
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public void reset() {
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCacheStats{hits=" + getHits() + ", misses=" + getMisses() + "}";
+    }
+}
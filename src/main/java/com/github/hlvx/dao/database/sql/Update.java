@@ -0,0 +1,23 @@
+package com.github.hlvx.dao.database.sql;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the insert, update or delete executed by a method of a DAO interface, an implementation is generated by
+ * the hlvx-dao-processor annotation processor
+ * The method takes a {@code Handler<AsyncResult<UpdateResult>>}, its other parameters are bound to the placeholders of
+ * the statement in declaration order
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Update {
+    /**
+     * @return The SQL statement
+     */
+    String value();
+}
@@ -0,0 +1,144 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prepares a manager for its first requests: opens and validates connections of the primary database, runs warm-up
+ * queries on each of them and creates idle DAO instances of every registered class.
+ * DAO instances are pooled per thread, so they are created for the thread running the warm-up: a warm-up should be
+ * run from the context of each verticle instance using the manager. A sharded manager warms every shard.
+ * See {@link DaoManager#createWarmUp()}
+ */
+public class WarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(WarmUp.class);
+    private final DaoManager manager;
+    private final List<String> queries = new ArrayList<>();
+    private final List<Object[]> queryParams = new ArrayList<>();
+    private int connections = 1;
+    private int daoInstances = 0;
+    private int validationTimeout = 5;
+
+    WarmUp(DaoManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * @param connections The number of connections opened and validated at the same time, 1 by default
+     * @return This warm-up
+     */
+    public WarmUp setConnections(int connections) {
+        if (connections <= 0) throw new IllegalArgumentException("Connections must be positive");
+        this.connections = connections;
+        return this;
+    }
+
+    /**
+     * @param daoInstances The number of idle instances created for each registered DAO class, 0 by default
+     * @return This warm-up
+     */
+    public WarmUp setDaoInstances(int daoInstances) {
+        if (daoInstances < 0) throw new IllegalArgumentException("DAO instances cannot be negative");
+        this.daoInstances = daoInstances;
+        return this;
+    }
+
+    /**
+     * @param seconds The maximum number of seconds to wait for the validation of a connection, 5 by default
+     * @return This warm-up
+     */
+    public WarmUp setValidationTimeout(int seconds) {
+        if (seconds < 0) throw new IllegalArgumentException("Validation timeout cannot be negative");
+        this.validationTimeout = seconds;
+        return this;
+    }
+
+    /**
+     * Adds a query executed on every warmed connection, usually one of the hot queries of the application
+     * With the statement cache enabled, the query is left prepared on each warmed connection
+     * @param query The query
+     * @param params The query parameters
+     * @return This warm-up
+     */
+    public WarmUp addQuery(String query, Object... params) {
+        queries.add(query);
+        queryParams.add(params);
+        return this;
+    }
+
+    /**
+     * Runs the warm-up, the manager is ready once it succeeds
+     * @param handler The handler called once the warm-up is done, or with the first failure
+     */
+    public void run(Handler<AsyncResult<Void>> handler) {
+        if (manager.getShardCount() == 0) {
+            warm(manager, handler);
+            return;
+        }
+        warmShards(0, handler);
+    }
+
+    private void warmShards(int index, Handler<AsyncResult<Void>> handler) {
+        if (index == manager.getShardCount()) {
+            manager.setReady();
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        warm(manager.getShard(index), result -> {
+            if (result.failed()) handler.handle(result);
+            else warmShards(index + 1, handler);
+        });
+    }
+
+    private void warm(DaoManager target, Handler<AsyncResult<Void>> handler) {
+        long start = System.nanoTime();
+        List<SQLSession> sessions = new ArrayList<>(connections);
+        Throwable[] failure = {null};
+        int[] running = {connections};
+        Handler<Throwable> done = cause -> {
+            if (cause != null && failure[0] == null) failure[0] = cause;
+            if (--running[0] > 0) return;
+            // Sessions are held until every connection is warm, so that each one uses a different connection
+            sessions.forEach(SQLSession::close);
+            if (failure[0] != null) {
+                handler.handle(Future.failedFuture(failure[0]));
+                return;
+            }
+            target.prefillPools(daoInstances);
+            target.setReady();
+            logger.debug("Warmed {} connections in {}ms", connections, (System.nanoTime() - start) / 1_000_000);
+            handler.handle(Future.succeededFuture());
+        };
+        for (int i = 0; i < connections; ++i) {
+            target.createSession(sessionResult -> {
+                if (sessionResult.failed()) {
+                    done.handle(sessionResult.cause());
+                    return;
+                }
+                SQLSession session = sessionResult.result();
+                sessions.add(session);
+                session.validate(validationTimeout, validated -> {
+                    if (validated.failed()) done.handle(validated.cause());
+                    else runQueries(session, 0, done);
+                });
+            });
+        }
+    }
+
+    private void runQueries(SQLSession session, int index, Handler<Throwable> done) {
+        if (index == queries.size()) {
+            done.handle(null);
+            return;
+        }
+        session.executeQuery(result -> {
+            if (result.failed()) done.handle(result.cause());
+            else runQueries(session, index + 1, done);
+        }, queries.get(index), queryParams.get(index));
+    }
+}
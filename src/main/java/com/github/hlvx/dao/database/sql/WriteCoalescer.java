@@ -0,0 +1,175 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.UpdateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges identical non transactional writes issued within a short window into a single JDBC batch
+ * Each caller receives its own {@link UpdateResult}, built from the update count of its row in the batch.
+ * The batch runs in a transaction: if it fails it is rolled back and its writes are replayed one by one, each in its
+ * own transaction, so that a caller only fails when its own write fails and never for a write that was committed.
+ * Generated keys are not returned for coalesced writes
+ */
+class WriteCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(WriteCoalescer.class);
+    private final DaoManager manager;
+    private final long windowMillis;
+    private final int maxRows;
+    private final Map<String, Batch> pending = new HashMap<>();
+
+    WriteCoalescer(DaoManager manager, long windowMillis, int maxRows) {
+        this.manager = manager;
+        this.windowMillis = windowMillis;
+        this.maxRows = maxRows;
+    }
+
+    void submit(String query, Object[] params, Handler<AsyncResult<UpdateResult>> consumer) {
+        Context context = manager.getContext();
+        if (context == null) {
+            consumer.handle(Future.failedFuture(new IllegalStateException(
+                    "Coalesced writes are issued on a Vert.x context, see DaoManager#setVertx")));
+            return;
+        }
+        Batch full = null;
+        synchronized (this) {
+            Batch batch = pending.get(query);
+            if (batch == null) {
+                batch = new Batch(query, context);
+                pending.put(query, batch);
+                Batch scheduled = batch;
+                batch.timerId = context.owner().setTimer(windowMillis, id -> flush(scheduled));
+            }
+            batch.add(new JsonArray(Arrays.asList(params)), consumer, context);
+            if (batch.size() >= maxRows) {
+                pending.remove(query);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            full.context.owner().cancelTimer(full.timerId);
+            execute(full);
+        }
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            if (pending.get(batch.query) != batch) return;
+            pending.remove(batch.query);
+        }
+        execute(batch);
+    }
+
+    private void execute(Batch batch) {
+        logger.debug("Flushing {} coalesced writes for {}", batch.size(), batch.query);
+        manager.createSession(sessionResult -> {
+            if (sessionResult.failed()) {
+                batch.fail(sessionResult.cause());
+                return;
+            }
+            SQLSession session = sessionResult.result();
+            session.startTransaction(started -> {
+                if (started.failed()) {
+                    session.close();
+                    batch.fail(started.cause());
+                    return;
+                }
+                session.executeBatch(result -> {
+                    if (result.succeeded()) {
+                        session.commit(committed -> {
+                            session.close();
+                            if (committed.failed()) batch.fail(committed.cause());
+                            else batch.complete(result.result());
+                        });
+                        return;
+                    }
+                    logger.debug("Coalesced batch failed, replaying its {} writes one by one", batch.size(),
+                            result.cause());
+                    session.rollback(rolledBack -> {
+                        if (rolledBack.failed()) {
+                            session.close();
+                            batch.fail(result.cause());
+                            return;
+                        }
+                        replay(session, batch, 0);
+                    });
+                }, batch.query, batch.args.toArray(new JsonArray[0]));
+            });
+        });
+    }
+
+    /**
+     * Executes the writes of a failed batch one by one on a session in transaction, committing each of them
+     */
+    private void replay(SQLSession session, Batch batch, int index) {
+        if (index == batch.size()) {
+            session.close();
+            return;
+        }
+        session.executeUpdate(result -> {
+            Handler<AsyncResult<Void>> next = ended -> {
+                if (result.failed()) batch.dispatch(index, Future.failedFuture(result.cause()));
+                else if (ended.failed()) batch.dispatch(index, Future.failedFuture(ended.cause()));
+                else batch.dispatch(index, Future.succeededFuture(new UpdateResult(result.result().getUpdated(),
+                        new JsonArray())));
+                replay(session, batch, index + 1);
+            };
+            if (result.failed()) session.rollback(next);
+            else session.commit(next);
+        }, batch.query, batch.args.get(index).getList().toArray());
+    }
+
+    private static class Batch {
+        private final String query;
+        private final Context context;
+        private final List<JsonArray> args = new ArrayList<>();
+        private final List<Handler<AsyncResult<UpdateResult>>> consumers = new ArrayList<>();
+        private final List<Context> contexts = new ArrayList<>();
+        private long timerId;
+
+        private Batch(String query, Context context) {
+            this.query = query;
+            this.context = context;
+        }
+
+        private void add(JsonArray params, Handler<AsyncResult<UpdateResult>> consumer, Context context) {
+            args.add(params);
+            consumers.add(consumer);
+            contexts.add(context);
+        }
+
+        private int size() {
+            return args.size();
+        }
+
+        private void complete(List<Integer> counts) {
+            for (int i = 0; i < consumers.size(); ++i) {
+                int updated = i < counts.size() ? counts.get(i) : 0;
+                dispatch(i, Future.succeededFuture(new UpdateResult(updated, new JsonArray())));
+            }
+        }
+
+        private void fail(Throwable cause) {
+            for (int i = 0; i < consumers.size(); ++i) dispatch(i, Future.failedFuture(cause));
+        }
+
+        private void dispatch(int index, AsyncResult<UpdateResult> result) {
+            Handler<AsyncResult<UpdateResult>> consumer = consumers.get(index);
+            Context target = contexts.get(index);
+            if (target == Vertx.currentContext()) consumer.handle(result);
+            else target.runOnContext(v -> consumer.handle(result));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BulkLoaderTest extends DatabaseTestBase {
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void count(Handler<AsyncResult<ResultSet>> handler) {
+            executeCachedQuery(handler, Collections.singleton("users"), "SELECT count(*) FROM users");
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JDBCClient client = client("bulk_loader");
+        manager = new DaoManager(client);
+        manager.setQueryCache(1000, 1, TimeUnit.MINUTES);
+        execute(client, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(32))");
+    }
+
+    @Test
+    public void loadInvalidatesCachedResultsOfTheTable() throws Exception {
+        assertEquals(0, count());
+
+        List<JsonArray> rows = new ArrayList<>();
+        for (int id = 0; id < 250; ++id) rows.add(new JsonArray().add(id).add("user" + id));
+        BulkLoadProgress progress = this.<BulkLoadProgress>await(handler ->
+                manager.createBulkLoader("INSERT INTO public.users (id, name) VALUES (?, ?)")
+                        .setParallelism(2)
+                        .setChunkSize(10, 50, 100)
+                        .load(rows.iterator(), handler));
+        assertEquals(250, progress.getRows());
+
+        // Without invalidation the count cached before the load would be returned for another minute
+        assertEquals(250, count());
+    }
+
+    @Test
+    public void streamFailureStopsTheLoad() throws Exception {
+        FailingStream rows = new FailingStream(25);
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> this.<BulkLoadProgress>await(handler ->
+                manager.createBulkLoader("INSERT INTO users (id, name) VALUES (?, ?)")
+                        .setParallelism(1)
+                        .setChunkSize(10, 10, 10)
+                        .load(rows, handler)));
+        assertEquals("Stream failed", failure.getCause().getMessage());
+        // The rows buffered before the failure are dropped instead of being loaded
+        assertEquals(0, count());
+    }
+
+    private int count() throws Exception {
+        ResultSet resultSet = this.<ResultSet>await(handler -> manager.createDao(UserDao.class, dao ->
+                dao.result().count(result -> {
+                    dao.result().close();
+                    handler.handle(result);
+                })));
+        return resultSet.getResults().get(0).getInteger(0);
+    }
+
+    /**
+     * Emits rows then fails, before the loader got a session
+     */
+    private class FailingStream implements ReadStream<JsonArray> {
+        private final int rows;
+        private Handler<Throwable> exceptionHandler;
+
+        private FailingStream(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public FailingStream exceptionHandler(Handler<Throwable> handler) {
+            exceptionHandler = handler;
+            return this;
+        }
+
+        @Override
+        public FailingStream handler(Handler<JsonArray> handler) {
+            vertx.runOnContext(v -> {
+                for (int id = 0; id < rows; ++id) handler.handle(new JsonArray().add(id).add("user" + id));
+                exceptionHandler.handle(new IllegalStateException("Stream failed"));
+            });
+            return this;
+        }
+
+        @Override
+        public FailingStream pause() {
+            return this;
+        }
+
+        @Override
+        public FailingStream resume() {
+            return this;
+        }
+
+        @Override
+        public FailingStream fetch(long amount) {
+            return this;
+        }
+
+        @Override
+        public FailingStream endHandler(Handler<Void> endHandler) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.hlvx.dao.database.sql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BulkheadTest extends DatabaseTestBase {
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        manager = new DaoManager(Arrays.asList(client("bulkhead_shard0"), client("bulkhead_shard1")),
+                (shardKey, shardCount) -> (Integer) shardKey);
+        manager.setBulkhead(UserDao.class, 1, 0, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void shardsLimitTheirOwnDaos() throws Exception {
+        UserDao dao = this.<UserDao>await(handler -> manager.createDaoForShard(1, UserDao.class, handler));
+        assertSame(manager.getShard(1).getBulkhead(UserDao.class), manager.getShardBulkhead(1, UserDao.class));
+        assertEquals(0, manager.getShardBulkhead(0, UserDao.class).getActive());
+        assertEquals(1, manager.getShardBulkhead(1, UserDao.class).getActive());
+
+        // The other shard still has its permit
+        UserDao other = this.<UserDao>await(handler -> manager.createDaoForShard(0, UserDao.class, handler));
+        assertEquals(1, manager.getShardBulkhead(0, UserDao.class).getActive());
+
+        run(() -> {
+            dao.close();
+            other.close();
+        });
+        assertEquals(0, manager.getShardBulkhead(1, UserDao.class).getActive());
+    }
+
+    @Test
+    public void waitersOutsideOfAContextAreTimedWithTheVertxOfTheManager() throws Exception {
+        DaoManager single = new DaoManager(client("bulkhead"));
+        single.setBulkhead(UserDao.class, 1, 1, 100, TimeUnit.MILLISECONDS);
+        UserDao dao = this.<UserDao>await(handler -> single.createDao(UserDao.class, handler));
+
+        // The thread of the test has no Vert.x context, without one the waiter would never time out
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> createDao(single));
+        assertEquals(IllegalStateException.class, failure.getCause().getClass());
+
+        single.setVertx(vertx);
+        failure = assertThrows(ExecutionException.class, () -> createDao(single));
+        assertEquals(TimeoutException.class, failure.getCause().getClass());
+        assertEquals(1, single.getBulkhead(UserDao.class).getTimedOut());
+        run(dao::close);
+    }
+
+    @Test
+    public void shardedManagerHasNoBulkheadOfItsOwn() {
+        assertThrows(IllegalStateException.class, () -> manager.getBulkhead(UserDao.class));
+    }
+
+    private UserDao createDao(DaoManager manager) throws Exception {
+        CompletableFuture<UserDao> future = new CompletableFuture<>();
+        manager.createDao(UserDao.class, result -> {
+            if (result.succeeded()) future.complete(result.result());
+            else future.completeExceptionally(result.cause());
+        });
+        return future.get(10, TimeUnit.SECONDS);
+    }
+}
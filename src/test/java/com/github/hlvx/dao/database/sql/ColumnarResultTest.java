@@ -0,0 +1,113 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColumnarResultTest extends DatabaseTestBase {
+    private static final String QUERY = "SELECT id, total, ratio, active, type FROM events ORDER BY id";
+    // More rows than the initial capacity of the columns
+    private static final int ROWS = 200;
+    private JDBCClient primary;
+    private JDBCClient replica;
+
+    public static class EventDao extends DAO {
+        public EventDao() {
+        }
+
+        void events(Handler<AsyncResult<ColumnarResult>> handler) {
+            executeQueryColumnar(handler, QUERY);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        primary = client("columnar_primary");
+        replica = client("columnar_replica");
+        List<String> statements = new ArrayList<>();
+        statements.add("DROP TABLE events IF EXISTS");
+        statements.add("CREATE TABLE events (id INT PRIMARY KEY, total BIGINT, ratio DOUBLE, active BOOLEAN,"
+                + " type VARCHAR(16))");
+        for (int id = 0; id < ROWS - 1; ++id)
+            statements.add("INSERT INTO events VALUES (" + id + ", " + id * 10_000_000_000L + ", " + id / 4.0 + ", "
+                    + (id % 2 == 0) + ", '" + (id % 3 == 0 ? "login" : "logout") + "')");
+        statements.add("INSERT INTO events VALUES (" + (ROWS - 1) + ", NULL, NULL, NULL, NULL)");
+        String[] sql = statements.toArray(new String[0]);
+        execute(primary, sql);
+        execute(replica, sql);
+    }
+
+    @Test
+    public void storesColumnsInPrimitiveArrays() throws Exception {
+        ColumnarResult result = query(new DaoManager(primary));
+        assertEquals(ROWS, result.getRowCount());
+        assertEquals(Arrays.asList("ID", "TOTAL", "RATIO", "ACTIVE", "TYPE"), result.getColumnNames());
+        assertEquals(Arrays.asList(ColumnarResult.Type.INT, ColumnarResult.Type.LONG, ColumnarResult.Type.DOUBLE,
+                ColumnarResult.Type.BOOLEAN, ColumnarResult.Type.STRING), types(result));
+        assertEquals(4, result.getColumnIndex("type"));
+
+        assertEquals(ROWS, result.getInts(0).length);
+        assertEquals(42, result.getInts(0)[42]);
+        assertEquals(420_000_000_000L, result.getLongs(1)[42]);
+        assertEquals(10.5, result.getDoubles(2)[42]);
+        assertTrue(result.getBoolean(3, 42));
+        assertEquals("login", result.getString(4, 42));
+        assertThrows(IllegalArgumentException.class, () -> result.getLongs(0));
+
+        // Each distinct string is kept once, rows hold its code
+        assertEquals(Arrays.asList("login", "logout"), result.getDictionary(4));
+        assertEquals(0, result.getCodes(4)[0]);
+        assertEquals(1, result.getCodes(4)[1]);
+
+        // Nulls read as 0 or false from the primitive getters
+        int last = ROWS - 1;
+        for (int column = 1; column < result.getColumnCount(); ++column) assertTrue(result.isNull(column, last));
+        assertFalse(result.isNull(0, last));
+        assertEquals(0, result.getLong(1, last));
+        assertFalse(result.getBoolean(3, last));
+        assertNull(result.getString(4, last));
+        assertNull(result.getValue(2, last));
+    }
+
+    @Test
+    public void convertsToTheRowsOfTheVertxClient() throws Exception {
+        ResultSet expected = this.<ResultSet>await(handler -> primary.query(QUERY, handler));
+        assertEquals(expected.getResults(), query(new DaoManager(primary)).toJsonArrays());
+
+        // Replica reads are converted from the rows of the Vert.x client, their column types are inferred
+        ColumnarResult result = query(new DaoManager(primary, Collections.singletonList(replica)));
+        assertEquals(expected.getResults(), result.toJsonArrays());
+        assertEquals(ColumnarResult.Type.LONG, result.getColumnType(1));
+        assertEquals(420_000_000_000L, result.getLongs(1)[42]);
+        assertEquals(Arrays.asList("login", "logout"), result.getDictionary(4));
+    }
+
+    private ColumnarResult query(DaoManager manager) throws Exception {
+        return this.<ColumnarResult>await(handler -> manager.createDao(EventDao.class, dao ->
+                dao.result().events(result -> {
+                    dao.result().close();
+                    handler.handle(result);
+                })));
+    }
+
+    private static List<ColumnarResult.Type> types(ColumnarResult result) {
+        List<ColumnarResult.Type> types = new ArrayList<>();
+        for (int column = 0; column < result.getColumnCount(); ++column) types.add(result.getColumnType(column));
+        return types;
+    }
+}
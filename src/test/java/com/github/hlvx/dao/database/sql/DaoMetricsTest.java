@@ -0,0 +1,77 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DaoMetricsTest extends DatabaseTestBase {
+    private static final String QUERY = "SELECT count(*) FROM users";
+    private DaoManager manager;
+    private InMemoryDaoMetrics metrics;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void count(Handler<AsyncResult<ResultSet>> handler) {
+            executeQuery(handler, QUERY);
+        }
+
+        void missing(Handler<AsyncResult<ResultSet>> handler) {
+            executeQuery(handler, "SELECT count(*) FROM missing");
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JDBCClient client = client("dao_metrics");
+        manager = new DaoManager(client);
+        metrics = new InMemoryDaoMetrics();
+        manager.setMetrics(metrics);
+        execute(client, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id INT PRIMARY KEY)");
+    }
+
+    @Test
+    public void recordsDaosStatementsAndErrors() throws Exception {
+        UserDao dao = this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        assertEquals(1, metrics.getOpenSessions());
+        this.<ResultSet>await(dao::count);
+        this.<ResultSet>await(dao::count);
+        assertThrows(ExecutionException.class, () -> this.<ResultSet>await(dao::missing));
+        run(dao::close);
+
+        assertEquals(1, metrics.getCreatedDaos(UserDao.class));
+        assertEquals(1, metrics.getConnectionAcquisition().getCount());
+        assertEquals(0, metrics.getConnectionErrors());
+        assertEquals(0, metrics.getOpenSessions());
+        assertEquals(2, metrics.getStatementLatency(UserDao.class, QUERY).getCount());
+        assertEquals(3, metrics.getDaoLatency(UserDao.class).getCount());
+        assertEquals(1, metrics.getDaoErrors(UserDao.class));
+        assertEquals(1, metrics.getStatementErrors());
+    }
+
+    @Test
+    public void histogramPercentilesAreWithinTwiceTheRealValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99, TimeUnit.NANOSECONDS));
+        for (long micros = 1; micros <= 1000; ++micros) histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax(TimeUnit.MICROSECONDS));
+        assertEquals(500.5, histogram.getMean(TimeUnit.MICROSECONDS), 0.001);
+        long p50 = histogram.getPercentile(50, TimeUnit.MICROSECONDS);
+        assertTrue(p50 >= 500 && p50 <= 1000, String.valueOf(p50));
+        long p99 = histogram.getPercentile(99, TimeUnit.MICROSECONDS);
+        assertTrue(p99 >= 990 && p99 <= 1000, String.valueOf(p99));
+    }
+}
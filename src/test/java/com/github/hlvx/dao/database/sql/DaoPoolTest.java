@@ -0,0 +1,92 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DaoPoolTest extends DatabaseTestBase {
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+    }
+
+    public static class NamedDao extends DAO {
+        public NamedDao(String name) {
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        manager = new DaoManager(client("dao_pool"));
+    }
+
+    @Test
+    public void reusesTheInstancesReturnedOnTheSameThread() throws Exception {
+        DaoPool pool = new DaoPool(DaoPool.constructorFactory(UserDao.class), 2);
+        assertNull(pool.poll());
+        DAO first = pool.create();
+        DAO second = pool.create();
+        DAO third = pool.create();
+        pool.release(first);
+        pool.release(second);
+        // The free list is full, the instance is left to the garbage collector
+        pool.release(third);
+        assertSame(second, pool.poll());
+        assertSame(first, pool.poll());
+        assertNull(pool.poll());
+        assertEquals(3, pool.getCreated());
+
+        // Another thread has its own free list
+        pool.release(first);
+        assertNull(CompletableFuture.supplyAsync(pool::poll).get(10, TimeUnit.SECONDS));
+        assertSame(first, pool.poll());
+    }
+
+    @Test
+    public void prefillsUpToTheIdleLimit() throws Exception {
+        DaoPool pool = new DaoPool(DaoPool.constructorFactory(UserDao.class), 2);
+        assertEquals(2, pool.prefill(5));
+        assertEquals(0, pool.prefill(5));
+        assertNotNull(pool.poll());
+        assertEquals(1, pool.prefill(5));
+        assertEquals(3, pool.getCreated());
+    }
+
+    @Test
+    public void managerHandsBackClosedDaos() throws Exception {
+        // Both DAOs are created on the same context, so the second one is taken from the free list of its thread
+        DAO[] daos = this.<DAO[]>await(handler -> manager.createDao(UserDao.class, first -> {
+            first.result().close();
+            manager.createDao(UserDao.class, second -> {
+                second.result().close();
+                handler.handle(Future.succeededFuture(new DAO[] {first.result(), second.result()}));
+            });
+        }));
+        assertSame(daos[0], daos[1]);
+
+        UserDao other = this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        UserDao open = this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        assertNotSame(other, open);
+        run(() -> {
+            other.close();
+            open.close();
+        });
+    }
+
+    @Test
+    public void rejectsDaosWithoutAnEmptyConstructor() {
+        assertThrows(NoSuchMethodException.class, () -> DaoPool.constructorFactory(NamedDao.class));
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DaoScopeTest extends DatabaseTestBase {
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void count(Handler<AsyncResult<ResultSet>> handler) {
+            executeQuery(handler, "SELECT count(*) FROM users");
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // Two connections, a DAO left open by a scope blocks the DAOs of a third one
+        JDBCClient client = client("dao_scope", 2);
+        manager = new DaoManager(client);
+        execute(client, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id INT PRIMARY KEY)");
+    }
+
+    @Test
+    public void closingTheScopeClosesItsDaos() throws Exception {
+        DaoScope scope = new DaoScope();
+        for (int i = 0; i < 2; ++i) this.<UserDao>await(handler -> manager.createDao(scope, UserDao.class, handler));
+        run(scope::close);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () ->
+                this.<UserDao>await(handler -> manager.createDao(scope, UserDao.class, handler)));
+        assertEquals("Scope closed", failure.getCause().getMessage());
+        // Both connections went back to the pool
+        assertEquals(0, count(new DaoScope()));
+        assertEquals(0, count(new DaoScope()));
+    }
+
+    @Test
+    public void throwingHandlerOnlyClosesItsOwnScope() throws Exception {
+        DaoScope failing = new DaoScope();
+        DaoScope other = new DaoScope();
+        UserDao dao = this.<UserDao>await(handler -> manager.createDao(failing, UserDao.class, handler));
+        UserDao otherDao = this.<UserDao>await(handler -> manager.createDao(other, UserDao.class, handler));
+
+        this.<ResultSet>await(handler -> dao.count(result -> {
+            handler.handle(result);
+            throw new IllegalStateException("Request failed");
+        }));
+        // The scope is closed by the callback that threw, before the next task of the context
+        run(() -> { });
+        assertTrue(failing.isClosed());
+        assertEquals(0, count(new DaoScope()));
+        assertFalse(other.isClosed());
+        assertEquals(0, this.<ResultSet>await(otherDao::count).getResults().get(0).getInteger(0));
+        run(other::close);
+    }
+
+    private int count(DaoScope scope) throws Exception {
+        ResultSet resultSet = this.<ResultSet>await(handler -> manager.createDao(scope, UserDao.class, dao ->
+                dao.result().count(result -> {
+                    scope.close();
+                    handler.handle(result);
+                })));
+        return resultSet.getResults().get(0).getInteger(0);
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.SQLConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Base of the tests running against in-memory HSQLDB databases
+ * Every test gets its own Vert.x instance, the clients created with {@link #client(String)} are closed after it
+ */
+abstract class DatabaseTestBase {
+    protected Vertx vertx;
+    private final List<JDBCClient> clients = new ArrayList<>();
+
+    @BeforeEach
+    public void startVertx() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterEach
+    public void closeVertx() throws Exception {
+        this.<Void>await(handler -> closeClients(clients.iterator(), closed -> vertx.close(handler)));
+        clients.clear();
+    }
+
+    /**
+     * @return A client of a 4 connection pool on an in-memory database
+     */
+    protected JDBCClient client(String database) {
+        return client(database, 4);
+    }
+
+    /**
+     * @return A client of a pool of at most maxPoolSize connections on an in-memory database
+     */
+    protected JDBCClient client(String database, int maxPoolSize) {
+        JDBCClient client = JDBCClient.createNonShared(vertx, new JsonObject()
+                .put("url", "jdbc:hsqldb:mem:" + database)
+                .put("driver_class", "org.hsqldb.jdbcDriver")
+                .put("max_pool_size", maxPoolSize)
+                .put("min_pool_size", 1)
+                .put("initial_pool_size", 1));
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * Executes statements one after the other on a connection of a client
+     */
+    protected void execute(JDBCClient client, String... statements) throws Exception {
+        this.<Void>await(handler -> client.getConnection(connection -> {
+            if (connection.failed()) {
+                handler.handle(Future.failedFuture(connection.cause()));
+                return;
+            }
+            execute(connection.result(), Arrays.asList(statements).iterator(), done -> {
+                connection.result().close();
+                handler.handle(done);
+            });
+        }));
+    }
+
+    /**
+     * Runs an action on the context of the test and waits for its result
+     * @return The result of the action
+     */
+    protected <T> T await(Consumer<Handler<AsyncResult<T>>> action) throws Exception {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        vertx.runOnContext(v -> action.accept(result -> {
+            if (result.succeeded()) future.complete(result.result());
+            else future.completeExceptionally(result.cause());
+        }));
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Runs an action on the context of the test and waits for it to return
+     */
+    protected void run(Runnable action) throws Exception {
+        this.<Void>await(handler -> {
+            action.run();
+            handler.handle(Future.succeededFuture());
+        });
+    }
+
+    private static void execute(SQLConnection connection, Iterator<String> statements,
+                                Handler<AsyncResult<Void>> handler) {
+        if (!statements.hasNext()) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        connection.execute(statements.next(), done -> {
+            if (done.failed()) handler.handle(done);
+            else execute(connection, statements, handler);
+        });
+    }
+
+    private static void closeClients(Iterator<JDBCClient> clients, Handler<AsyncResult<Void>> handler) {
+        if (!clients.hasNext()) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        clients.next().close(closed -> closeClients(clients, handler));
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeadlineTest extends DatabaseTestBase {
+    private static final String SLOW_QUERY = "SELECT pause(?) FROM (VALUES (0))";
+    private DaoManager manager;
+
+    public static class SlowDao extends DAO {
+        public SlowDao() {
+        }
+
+        void pause(Handler<AsyncResult<ResultSet>> handler, int millis) {
+            executeQuery(handler, SLOW_QUERY, millis);
+        }
+
+        void pause(Handler<AsyncResult<ResultSet>> handler, int millis, long timeout) {
+            executeQuery(handler, timeout, TimeUnit.MILLISECONDS, SLOW_QUERY, millis);
+        }
+    }
+
+    /**
+     * Called by the database, blocks the statement for a while
+     */
+    public static int pause(int millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return millis;
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // A single connection, it is only available again once the cancelled statement returned
+        JDBCClient client = client("deadline", 1);
+        manager = new DaoManager(client);
+        execute(client, "DROP FUNCTION pause IF EXISTS", "CREATE FUNCTION pause(millis INT) RETURNS INT "
+                + "LANGUAGE JAVA NOT DETERMINISTIC NO SQL "
+                + "EXTERNAL NAME 'CLASSPATH:com.github.hlvx.dao.database.sql.DeadlineTest.pause'");
+    }
+
+    @Test
+    public void statementFailsAtItsDeadline() throws Exception {
+        SlowDao dao = this.<SlowDao>await(handler -> manager.createDao(SlowDao.class, handler));
+        long start = System.nanoTime();
+        ExecutionException failure = assertThrows(ExecutionException.class, () ->
+                this.<ResultSet>await(handler -> dao.pause(handler, 1000, 100)));
+        assertEquals(TimeoutException.class, failure.getCause().getClass());
+        // The handler does not wait for the statement to return
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(800));
+
+        // The session is expired, its connection goes back to the pool for the next DAO
+        failure = assertThrows(ExecutionException.class, () -> this.<ResultSet>await(handler -> dao.pause(handler, 0)));
+        assertEquals(IllegalStateException.class, failure.getCause().getClass());
+        run(dao::close);
+        assertEquals(0, pause());
+    }
+
+    @Test
+    public void managerTimeoutAppliesToTheDaoClass() throws Exception {
+        manager.setStatementTimeout(SlowDao.class, 100, TimeUnit.MILLISECONDS);
+        SlowDao dao = this.<SlowDao>await(handler -> manager.createDao(SlowDao.class, handler));
+        ExecutionException failure = assertThrows(ExecutionException.class, () ->
+                this.<ResultSet>await(handler -> dao.pause(handler, 1000)));
+        assertEquals(TimeoutException.class, failure.getCause().getClass());
+        run(dao::close);
+    }
+
+    @Test
+    public void deadlineCoversTheWaitBehindPreviousStatements() throws Exception {
+        SlowDao dao = this.<SlowDao>await(handler -> manager.createDao(SlowDao.class, handler));
+        CompositeFuture results = this.<CompositeFuture>await(handler -> {
+            Future<ResultSet> slow = Future.future();
+            Future<ResultSet> bounded = Future.future();
+            dao.pause(slow, 500);
+            // Fast on its own, but queued behind the slow statement of the session
+            dao.pause(bounded, 0, 100);
+            CompositeFuture joined = CompositeFuture.join(slow, bounded);
+            joined.setHandler(done -> handler.handle(Future.succeededFuture(joined)));
+        });
+        assertTrue(results.succeeded(0));
+        assertEquals(TimeoutException.class, results.cause(1).getClass());
+        run(dao::close);
+    }
+
+    private int pause() throws Exception {
+        ResultSet resultSet = this.<ResultSet>await(handler -> manager.createDao(SlowDao.class, dao ->
+                dao.result().pause(result -> {
+                    dao.result().close();
+                    handler.handle(result);
+                }, 0)));
+        return resultSet.getResults().get(0).getInteger(0);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.UpdateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LazySessionTest extends DatabaseTestBase {
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void insert(Handler<AsyncResult<UpdateResult>> handler, int id) {
+            executeUpdate(handler, "INSERT INTO users (id) VALUES (?)", id);
+        }
+
+        void count(Handler<AsyncResult<ResultSet>> handler) {
+            executeQuery(handler, "SELECT count(*) FROM users");
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // A single connection, a DAO holding it would block every other one
+        JDBCClient client = client("lazy_session", 1);
+        manager = new DaoManager(client);
+        manager.setLazyConnections(true);
+        execute(client, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id INT PRIMARY KEY)");
+    }
+
+    @Test
+    public void openDaosShareTheConnection() throws Exception {
+        List<UserDao> daos = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) daos.add(this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler)));
+        this.<CompositeFuture>await(handler -> {
+            List<Future> inserts = new ArrayList<>();
+            for (int id = 0; id < daos.size(); ++id) {
+                Future<UpdateResult> insert = Future.future();
+                daos.get(id).insert(insert, id);
+                inserts.add(insert);
+            }
+            CompositeFuture.all(inserts).setHandler(handler);
+        });
+        daos.forEach(UserDao::close);
+        assertEquals(3, count());
+    }
+
+    @Test
+    public void closeDuringATransactionRollsItBack() throws Exception {
+        UserDao dao = this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        this.<UpdateResult>await(handler -> dao.startTransaction(started -> dao.insert(handler, 1)));
+        run(dao::close);
+        // The connection went back to the pool, otherwise the count would wait for it
+        assertEquals(0, count());
+    }
+
+    private int count() throws Exception {
+        ResultSet resultSet = this.<ResultSet>await(handler -> manager.createDao(UserDao.class, dao ->
+                dao.result().count(result -> {
+                    dao.result().close();
+                    handler.handle(result);
+                })));
+        return resultSet.getResults().get(0).getInteger(0);
+    }
+}
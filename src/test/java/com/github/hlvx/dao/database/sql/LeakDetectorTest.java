@@ -0,0 +1,54 @@
+package com.github.hlvx.dao.database.sql;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LeakDetectorTest extends DatabaseTestBase {
+    private DaoManager manager;
+    private LeakDetector detector;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        manager = new DaoManager(client("leak_detector"));
+        manager.setBulkhead(UserDao.class, 1, 0, 100, TimeUnit.MILLISECONDS);
+        detector = new LeakDetector(vertx, 200, TimeUnit.MILLISECONDS).setReclaim(true);
+        manager.setLeakDetector(detector);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        detector.close();
+    }
+
+    @Test
+    public void reclaimReleasesTheBulkheadPermit() throws Exception {
+        // Leaked, never closed
+        this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        assertEquals(1, manager.getBulkhead(UserDao.class).getActive());
+        ExecutionException rejected = assertThrows(ExecutionException.class,
+                () -> this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler)));
+        assertEquals(RejectedExecutionException.class, rejected.getCause().getClass());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (manager.getBulkhead(UserDao.class).getActive() > 0 && System.nanoTime() < deadline) Thread.sleep(50);
+        assertEquals(0, manager.getBulkhead(UserDao.class).getActive());
+
+        UserDao dao = this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        assertEquals(1, manager.getBulkhead(UserDao.class).getActive());
+        run(dao::close);
+        assertEquals(0, manager.getBulkhead(UserDao.class).getActive());
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PipelineTest extends DatabaseTestBase {
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void execute(Handler<AsyncResult<PipelineResult>> handler, Pipeline pipeline) {
+            executePipeline(handler, pipeline);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JDBCClient client = client("pipeline");
+        manager = new DaoManager(client);
+        execute(client, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(32))");
+    }
+
+    @Test
+    public void returnsTheResultsInOrder() throws Exception {
+        assertPipelineResults();
+    }
+
+    @Test
+    public void returnsTheResultsInOrderWithTheStatementCache() throws Exception {
+        manager.setStatementCacheEnabled(true);
+        assertPipelineResults();
+    }
+
+    @Test
+    public void failingStatementFailsThePipeline() throws Exception {
+        Pipeline pipeline = new Pipeline()
+                .update("INSERT INTO users (id, name) VALUES (?, ?)", 1, "first")
+                .query("SELECT name FROM missing");
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> execute(pipeline));
+        assertTrue(failure.getCause().getMessage().contains("MISSING"), failure.getCause().getMessage());
+    }
+
+    private void assertPipelineResults() throws Exception {
+        Pipeline pipeline = new Pipeline()
+                .update("INSERT INTO users (id, name) VALUES (?, ?)", 1, "first")
+                .update("INSERT INTO users (id, name) VALUES (?, ?)", 2, "second")
+                .query("SELECT name FROM users WHERE id = ?", 2)
+                .query("SELECT count(*) FROM users");
+        assertEquals(4, pipeline.size());
+        PipelineResult result = execute(pipeline);
+
+        assertEquals(4, result.size());
+        assertEquals(1, result.getUpdateResult(0).getUpdated());
+        assertEquals(1, result.getUpdateResult(1).getUpdated());
+        // Each statement sees the writes of the previous ones
+        assertEquals("second", result.getResultSet(2).getResults().get(0).getString(0));
+        assertEquals(2, (int) result.getResultSet(3).getResults().get(0).getInteger(0));
+        assertThrows(IllegalArgumentException.class, () -> result.getResultSet(0));
+        assertThrows(IllegalArgumentException.class, () -> result.getUpdateResult(2));
+    }
+
+    private PipelineResult execute(Pipeline pipeline) throws Exception {
+        return this.<PipelineResult>await(handler -> manager.createDao(UserDao.class, dao ->
+                dao.result().execute(result -> {
+                    dao.result().close();
+                    handler.handle(result);
+                }, pipeline)));
+    }
+}
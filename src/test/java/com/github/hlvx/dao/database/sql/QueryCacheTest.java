@@ -0,0 +1,68 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class QueryCacheTest {
+    private static final long TTL = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    public void normalizesWrittenTables() {
+        assertEquals("users", QueryCache.writtenTable("INSERT INTO users (id) VALUES (?)"));
+        assertEquals("users", QueryCache.writtenTable("UPDATE public.users SET name = ?"));
+        assertEquals("users", QueryCache.writtenTable("DELETE FROM \"PUBLIC\".\"USERS\" WHERE id = ?"));
+        assertEquals("users", QueryCache.writtenTable("MERGE INTO app . `Users` USING dual ON (1 = 1)"));
+        assertEquals("user.log", QueryCache.writtenTable("TRUNCATE TABLE [dbo].[user.log]"));
+        assertNull(QueryCache.writtenTable("CALL refresh()"));
+    }
+
+    @Test
+    public void normalizesDeclaredTables() {
+        assertEquals("users", QueryCache.normalize("users"));
+        assertEquals("users", QueryCache.normalize("Public.Users"));
+        assertEquals("users", QueryCache.normalize("\"public\".\"users\""));
+    }
+
+    @Test
+    public void schemaQualifiedWriteInvalidatesUnqualifiedRead() {
+        QueryCache cache = new QueryCache(1000);
+        String key = QueryCache.key("SELECT * FROM users WHERE id = ?", new Object[] {1});
+        put(cache, key, "users");
+        assertNotNull(cache.get(key));
+
+        cache.invalidate("UPDATE public.users SET name = 'bob' WHERE id = 1");
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void unqualifiedWriteInvalidatesQualifiedRead() {
+        QueryCache cache = new QueryCache(1000);
+        String key = QueryCache.key("SELECT * FROM public.users", new Object[0]);
+        put(cache, key, QueryCache.normalize("PUBLIC.USERS"));
+        cache.invalidate("DELETE FROM users");
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void writeToAnotherTableKeepsTheResult() {
+        QueryCache cache = new QueryCache(1000);
+        String key = QueryCache.key("SELECT * FROM users", new Object[0]);
+        put(cache, key, "users");
+        cache.invalidate("INSERT INTO public.user_roles VALUES (1, 2)");
+        assertNotNull(cache.get(key));
+    }
+
+    private static void put(QueryCache cache, String key, String table) {
+        ResultSet resultSet = new ResultSet(Collections.singletonList("ID"),
+                Collections.singletonList(new JsonArray().add(1)), null);
+        cache.put(key, Collections.singleton(table), resultSet, TTL, cache.version(Collections.singleton(table)));
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RangeQueryTest extends DatabaseTestBase {
+    private static final String QUERY = "SELECT id FROM events WHERE type = ? AND id >= ? AND id < ? ORDER BY id";
+    private DaoManager manager;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JDBCClient client = client("range_query");
+        manager = new DaoManager(client);
+        List<String> statements = new ArrayList<>();
+        statements.add("DROP TABLE events IF EXISTS");
+        statements.add("CREATE TABLE events (id BIGINT PRIMARY KEY, type VARCHAR(16))");
+        for (int id = 0; id < 100; ++id)
+            statements.add("INSERT INTO events VALUES (" + id + ", '" + (id % 2 == 0 ? "login" : "logout") + "')");
+        execute(client, statements.toArray(new String[0]));
+    }
+
+    @Test
+    public void splitsRangesEvenly() {
+        RangeQuery query = manager.createRangeQuery(QUERY).setPartitions(4);
+        assertArrayEquals(new long[] {0, 3, 6, 8, 10}, query.split(0, 10));
+        assertArrayEquals(new long[] {-1, 0, 1}, query.split(-1, 1));
+        assertArrayEquals(new long[0], query.split(5, 5));
+    }
+
+    @Test
+    public void splitsRangesWiderThanALong() {
+        RangeQuery query = manager.createRangeQuery(QUERY).setPartitions(4);
+        long[] bounds = query.split(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(5, bounds.length);
+        assertEquals(Long.MIN_VALUE, bounds[0]);
+        assertEquals(Long.MAX_VALUE, bounds[4]);
+        for (int i = 1; i < bounds.length; ++i) assertTrue(bounds[i - 1] < bounds[i]);
+        assertEquals(0, bounds[2]);
+
+        bounds = query.split(-1, Long.MAX_VALUE);
+        assertEquals(-1, bounds[0]);
+        assertEquals(Long.MAX_VALUE, bounds[4]);
+    }
+
+    @Test
+    public void mergesSubRangesInOrder() throws Exception {
+        ResultSet resultSet = this.<ResultSet>await(handler -> manager.createRangeQuery(QUERY)
+                .setPartitions(7)
+                .setParallelism(3)
+                .execute(handler, 10, 90, "login"));
+        List<Long> ids = new ArrayList<>();
+        resultSet.getResults().forEach(row -> ids.add(row.getLong(0)));
+        List<Long> expected = new ArrayList<>();
+        for (long id = 10; id < 90; id += 2) expected.add(id);
+        assertEquals(expected, ids);
+        assertEquals("ID", resultSet.getColumnNames().get(0));
+    }
+
+    @Test
+    public void streamsSubRangesInOrder() throws Exception {
+        List<Long> firstIds = this.<List<Long>>await(handler -> {
+            List<Long> ids = new ArrayList<>();
+            manager.createRangeQuery(QUERY).setPartitions(10).setParallelism(4).stream(partition ->
+                    ids.add(partition.getResults().isEmpty() ? null : partition.getResults().get(0).getLong(0)),
+                    end -> handler.handle(end.map(ids)), Long.MIN_VALUE, Long.MAX_VALUE, "logout");
+        });
+        // Only the sub range holding the ids has rows, the other ones are received empty
+        assertEquals(10, firstIds.size());
+        assertTrue(firstIds.contains(1L));
+    }
+
+    @Test
+    public void failsWithTheFirstFailure() {
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> this.<ResultSet>await(handler ->
+                manager.createRangeQuery("SELECT id FROM missing WHERE id >= ? AND id < ?").execute(handler, 0, 100)));
+        assertTrue(failure.getCause().getMessage().contains("MISSING"), failure.getCause().getMessage());
+    }
+
+    @Test
+    public void emptyRangeEndsRightAway() throws Exception {
+        ResultSet resultSet = this.<ResultSet>await(handler -> manager.createRangeQuery(QUERY)
+                .execute(handler, 10, 10, "login"));
+        assertTrue(resultSet.getResults().isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.JDBCClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReadCoalescerTest extends DatabaseTestBase {
+    private static final String QUERY = "SELECT id, name FROM users WHERE id IN (?)";
+    private DaoManager manager;
+    private InMemoryDaoMetrics metrics;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void find(Handler<AsyncResult<JsonObject>> handler, Object id) {
+            executeLoad(handler, QUERY, "id", id);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JDBCClient client = client("read_coalescer");
+        manager = new DaoManager(client);
+        metrics = new InMemoryDaoMetrics();
+        manager.setMetrics(metrics);
+        manager.enableReadCoalescing(UserDao.class, 0, TimeUnit.MILLISECONDS, 100);
+        execute(client, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id BIGINT PRIMARY KEY, name VARCHAR(32))",
+                "INSERT INTO users VALUES (1, 'user1')", "INSERT INTO users VALUES (2, 'user2')",
+                "INSERT INTO users VALUES (3, 'user3')");
+    }
+
+    @Test
+    public void lookupsOfTheSameTickShareOneQuery() throws Exception {
+        UserDao dao = this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        long sessions = metrics.getConnectionAcquisition().getCount();
+        List<Object> keys = Arrays.asList(1, 2L, 1, 4, 3);
+        List<JsonObject> users = this.<List<JsonObject>>await(handler -> {
+            List<Future> lookups = new ArrayList<>();
+            for (Object key : keys) {
+                Future<JsonObject> lookup = Future.future();
+                dao.find(lookup, key);
+                lookups.add(lookup);
+            }
+            CompositeFuture.all(lookups).setHandler(all -> handler.handle(all.map(CompositeFuture::list)));
+        });
+        run(dao::close);
+
+        // Integer and Long keys match the same BIGINT column, a missing key receives no row
+        assertEquals("user1", users.get(0).getString("NAME"));
+        assertEquals("user2", users.get(1).getString("NAME"));
+        assertEquals("user1", users.get(2).getString("NAME"));
+        assertNull(users.get(3));
+        assertEquals("user3", users.get(4).getString("NAME"));
+        assertEquals(1, metrics.getConnectionAcquisition().getCount() - sessions);
+    }
+
+    @Test
+    public void lookupsOutsideOfAContextUseTheVertxOfTheManager() throws Exception {
+        UserDao dao = this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        // The thread of the test has no Vert.x context to flush the lookups on
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> find(dao, 2));
+        assertEquals(IllegalStateException.class, failure.getCause().getClass());
+
+        manager.setVertx(vertx);
+        assertEquals("user2", find(dao, 2).getString("NAME"));
+        run(dao::close);
+    }
+
+    private JsonObject find(UserDao dao, Object id) throws Exception {
+        CompletableFuture<JsonObject> future = new CompletableFuture<>();
+        dao.find(result -> {
+            if (result.succeeded()) future.complete(result.result());
+            else future.completeExceptionally(result.cause());
+        }, id);
+        return future.get(10, TimeUnit.SECONDS);
+    }
+}
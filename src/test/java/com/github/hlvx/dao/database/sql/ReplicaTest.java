@@ -0,0 +1,76 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.UpdateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReplicaTest extends DatabaseTestBase {
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void insert(Handler<AsyncResult<UpdateResult>> handler, int id, String name) {
+            executeInsert(handler, "INSERT INTO users (id, name) VALUES (?, ?)", id, name);
+        }
+
+        void insertAll(Handler<AsyncResult<List<Integer>>> handler, JsonArray... rows) {
+            executeBatch(handler, "INSERT INTO users (id, name) VALUES (?, ?)", rows);
+        }
+
+        void names(Handler<AsyncResult<ResultSet>> handler) {
+            executeQuery(handler, "SELECT name FROM users ORDER BY id");
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JDBCClient primary = client("replica_primary");
+        JDBCClient replica = client("replica_replica");
+        // The replica lags behind the primary, a read shows which database served it
+        execute(primary, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(32))",
+                "INSERT INTO users VALUES (1, 'primary')");
+        execute(replica, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(32))",
+                "INSERT INTO users VALUES (1, 'replica')");
+        manager = new DaoManager(primary, Collections.singletonList(replica));
+    }
+
+    @Test
+    public void readsGoToTheReplicaUntilTheSessionWrites() throws Exception {
+        UserDao dao = this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        assertEquals("[[\"replica\"]]", this.<ResultSet>await(dao::names).getResults().toString());
+
+        this.<UpdateResult>await(handler -> dao.insert(handler, 2, "written"));
+        // The DAO reads its own write from the primary
+        assertEquals("[[\"primary\"], [\"written\"]]", this.<ResultSet>await(dao::names).getResults().toString());
+        run(dao::close);
+    }
+
+    @Test
+    public void readOnlyDaosFailTheirWrites() throws Exception {
+        UserDao dao = this.<UserDao>await(handler -> manager.createReadOnlyDao(UserDao.class, handler));
+        ExecutionException failure = assertThrows(ExecutionException.class, () ->
+                this.<UpdateResult>await(handler -> dao.insert(handler, 2, "written")));
+        assertEquals(IllegalStateException.class, failure.getCause().getClass());
+        failure = assertThrows(ExecutionException.class, () -> this.<List<Integer>>await(handler ->
+                dao.insertAll(handler, new JsonArray().add(3).add("written"))));
+        assertEquals(IllegalStateException.class, failure.getCause().getClass());
+
+        // Nothing was written to the replica and the DAO still reads from it
+        assertEquals("[[\"replica\"]]", this.<ResultSet>await(dao::names).getResults().toString());
+        run(dao::close);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RowMapperTest extends DatabaseTestBase {
+    private static final String QUERY = "SELECT id, owner_id, version, active, event_name, price, created AS created_at,"
+            + " created AS created_local, day, 'x' AS extra FROM events ORDER BY id";
+    private TimeZone defaultZone;
+    private JDBCClient client;
+    private DaoManager manager;
+
+    public static class Event {
+        private int id;
+        private Integer ownerId;
+        private long version;
+        private boolean active;
+        private String eventName;
+        private BigDecimal price;
+        private Instant createdAt;
+        private LocalDateTime createdLocal;
+        private LocalDate day;
+        private String unmatched = "default";
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // Far from UTC, so a conversion in the wrong zone changes the wall clock time and the date
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        client = client("row_mapper");
+        manager = new DaoManager(client);
+        execute(client, "DROP TABLE events IF EXISTS",
+                "CREATE TABLE events (id INT PRIMARY KEY, owner_id INT, version BIGINT, active BOOLEAN,"
+                        + " event_name VARCHAR(32), price DECIMAL(10, 2), created TIMESTAMP, day DATE)",
+                "INSERT INTO events VALUES (1, 7, 3, TRUE, 'launch', 12.50, TIMESTAMP '2020-03-01 23:30:00',"
+                        + " DATE '2020-03-02')",
+                "INSERT INTO events VALUES (2, NULL, NULL, NULL, NULL, NULL, NULL, NULL)");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void mapsColumnsToFieldsFromTheJdbcResultSet() throws Exception {
+        List<Event> events = queryJdbc();
+        Event event = events.get(0);
+        assertEquals(1, event.id);
+        assertEquals(Integer.valueOf(7), event.ownerId);
+        assertEquals(3, event.version);
+        assertTrue(event.active);
+        assertEquals("launch", event.eventName);
+        assertEquals(new BigDecimal("12.50"), event.price);
+        assertEquals(LocalDateTime.of(2020, 3, 1, 23, 30), event.createdLocal);
+        assertEquals(LocalDate.of(2020, 3, 2), event.day);
+        assertEquals("default", event.unmatched);
+
+        // Null columns leave primitive fields to their default value
+        Event empty = events.get(1);
+        assertNull(empty.ownerId);
+        assertEquals(0, empty.version);
+        assertFalse(empty.active);
+        assertNull(empty.createdAt);
+        assertNull(empty.createdLocal);
+        assertNull(empty.day);
+    }
+
+    @Test
+    public void mapsVertxRowsLikeJdbcRowsOutsideUtc() throws Exception {
+        Event jdbc = queryJdbc().get(0);
+        ResultSet resultSet = this.<ResultSet>await(handler -> client.query(QUERY, handler));
+        List<Event> events = RowMapper.of(Event.class, resultSet.getColumnNames()).mapAll(resultSet);
+        Event vertx = events.get(0);
+
+        assertEquals(jdbc.createdAt, vertx.createdAt);
+        assertEquals(LocalDateTime.of(2020, 3, 1, 23, 30), vertx.createdLocal);
+        assertEquals(jdbc.createdLocal, vertx.createdLocal);
+        assertEquals(LocalDate.of(2020, 3, 2), vertx.day);
+        // The Vert.x client converts decimals to doubles, the scale is lost
+        assertEquals(0, jdbc.price.compareTo(vertx.price));
+        assertEquals(jdbc.version, vertx.version);
+        assertNull(events.get(1).createdLocal);
+    }
+
+    private List<Event> queryJdbc() throws Exception {
+        return this.<List<Event>>await(handler -> manager.createSession(sessionResult -> {
+            SQLSession session = sessionResult.result();
+            session.executeQueryAs(result -> {
+                session.close();
+                handler.handle(result);
+            }, Event.class, QUERY);
+        }));
+    }
+}
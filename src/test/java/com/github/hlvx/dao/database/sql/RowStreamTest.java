@@ -0,0 +1,93 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RowStreamTest extends DatabaseTestBase {
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void users(Handler<AsyncResult<RowStream>> handler, String table) {
+            executeQueryStream(handler, 100, "SELECT id FROM " + table + " ORDER BY id");
+        }
+
+        void count(Handler<AsyncResult<ResultSet>> handler) {
+            executeQuery(handler, "SELECT count(*) FROM users");
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // A single connection, a stream that does not release its DAO blocks the next one
+        JDBCClient client = client("row_stream", 1);
+        manager = new DaoManager(client);
+        List<String> statements = new ArrayList<>();
+        statements.add("DROP TABLE users IF EXISTS");
+        statements.add("CREATE TABLE users (id INT PRIMARY KEY)");
+        for (int id = 0; id < 1000; ++id) statements.add("INSERT INTO users VALUES (" + id + ")");
+        execute(client, statements.toArray(new String[0]));
+    }
+
+    @Test
+    public void streamsEveryRowInOrderAndClosesTheDao() throws Exception {
+        List<Integer> ids = this.<List<Integer>>await(handler -> manager.createDao(UserDao.class, dao ->
+                dao.result().users(streamResult -> {
+                    List<Integer> rows = new ArrayList<>();
+                    RowStream stream = streamResult.result();
+                    stream.exceptionHandler(e -> handler.handle(Future.failedFuture(e)))
+                            .endHandler(v -> handler.handle(Future.succeededFuture(rows)))
+                            .handler(row -> rows.add(row.getInteger(0)));
+                }, "users")));
+        assertEquals(1000, ids.size());
+        for (int id = 0; id < ids.size(); ++id) assertEquals(id, (int) ids.get(id));
+        assertEquals(1000, count());
+    }
+
+    @Test
+    public void pausedStreamOnlyReadsTheFetchedRows() throws Exception {
+        List<Integer> rows = new ArrayList<>();
+        RowStream stream = this.<RowStream>await(handler -> manager.createDao(UserDao.class, dao ->
+                dao.result().users(handler, "users")));
+        run(() -> stream.pause().fetch(5).handler(row -> rows.add(row.getInteger(0))));
+        Thread.sleep(200);
+        run(() -> assertEquals(5, rows.size()));
+
+        this.<Void>await(handler -> stream.endHandler(v -> handler.handle(Future.succeededFuture())).resume());
+        run(() -> assertEquals(1000, rows.size()));
+        assertEquals(1000, count());
+    }
+
+    @Test
+    public void failedQueryClosesTheDao() throws Exception {
+        ExecutionException failure = assertThrows(ExecutionException.class, () ->
+                this.<RowStream>await(handler -> manager.createDao(UserDao.class, dao ->
+                        dao.result().users(handler, "missing"))));
+        assertTrue(failure.getCause().getMessage().contains("MISSING"), failure.getCause().getMessage());
+        assertEquals(1000, count());
+    }
+
+    private int count() throws Exception {
+        ResultSet resultSet = this.<ResultSet>await(handler -> manager.createDao(UserDao.class, dao ->
+                dao.result().count(result -> {
+                    dao.result().close();
+                    handler.handle(result);
+                })));
+        return resultSet.getResults().get(0).getInteger(0);
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.UpdateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardingTest extends DatabaseTestBase {
+    private JDBCClient shard0;
+    private JDBCClient shard1;
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void insert(Handler<AsyncResult<UpdateResult>> handler, long id, String name) {
+            executeUpdate(handler, "INSERT INTO users (id, name) VALUES (?, ?)", id, name);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        shard0 = client("sharding_shard0");
+        shard1 = client("sharding_shard1");
+        for (JDBCClient shard : Arrays.asList(shard0, shard1)) {
+            execute(shard, "DROP TABLE users IF EXISTS",
+                    "CREATE TABLE users (id BIGINT PRIMARY KEY, name VARCHAR(32))");
+        }
+        manager = new DaoManager(Arrays.asList(shard0, shard1), new RangeShardResolver<>(Arrays.asList(0L, 100L)));
+    }
+
+    @Test
+    public void routesDaosAndSessionsToTheShardOfTheKey() throws Exception {
+        for (long id : new long[] {5, 99, 100, 150}) {
+            this.<UpdateResult>await(handler -> manager.createDaoForShard(id, UserDao.class, dao ->
+                    dao.result().insert(result -> {
+                        dao.result().close();
+                        handler.handle(result);
+                    }, id, "user" + id)));
+        }
+        assertEquals(Arrays.asList(5L, 99L), ids(shard0));
+        assertEquals(Arrays.asList(100L, 150L), ids(shard1));
+
+        ResultSet resultSet = this.<ResultSet>await(handler -> manager.createShardSession(150L, sessionResult -> {
+            SQLSession session = sessionResult.result();
+            session.executeQuery(result -> {
+                session.close();
+                handler.handle(result);
+            }, "SELECT name FROM users ORDER BY id");
+        }));
+        assertEquals("[[\"user100\"], [\"user150\"]]", resultSet.getResults().toString());
+    }
+
+    @Test
+    public void failsKeysOfAnotherType() {
+        ExecutionException failure = assertThrows(ExecutionException.class, () ->
+                this.<UserDao>await(handler -> manager.createDaoForShard(150, UserDao.class, handler)));
+        assertEquals(IllegalArgumentException.class, failure.getCause().getClass());
+        assertEquals("Shard key 150 is a java.lang.Integer, the ranges are bounded by java.lang.Long",
+                failure.getCause().getMessage());
+    }
+
+    @Test
+    public void rangeResolverAssignsKeysToTheirRange() {
+        RangeShardResolver<String> resolver = new RangeShardResolver<>(Arrays.asList("g", "p"));
+        // Keys lower than the first bound belong to the first shard
+        assertEquals(0, resolver.resolve("a", 2));
+        assertEquals(0, resolver.resolve("g", 2));
+        assertEquals(0, resolver.resolve("o", 2));
+        assertEquals(1, resolver.resolve("p", 2));
+        assertEquals(1, resolver.resolve("z", 2));
+        assertThrows(IllegalStateException.class, () -> resolver.resolve("a", 3));
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new RangeShardResolver<>(Arrays.asList(2, 1)));
+        assertThrows(IllegalArgumentException.class, () -> new RangeShardResolver<>(Collections.<Long>emptyList()));
+    }
+
+    @Test
+    public void hashResolverSpreadsSequentialKeys() {
+        HashShardResolver resolver = new HashShardResolver();
+        int[] counts = new int[4];
+        for (int key = 0; key < 4000; ++key) ++counts[resolver.resolve(key, 4)];
+        for (int count : counts) assertTrue(count > 800 && count < 1200, Arrays.toString(counts));
+
+        Set<Integer> shards = new HashSet<>();
+        for (int i = 0; i < 10; ++i) shards.add(resolver.resolve("user", 4));
+        assertEquals(1, shards.size());
+    }
+
+    private List<Long> ids(JDBCClient shard) throws Exception {
+        ResultSet resultSet = this.<ResultSet>await(handler -> shard.query("SELECT id FROM users ORDER BY id", handler));
+        List<Long> ids = new ArrayList<>();
+        resultSet.getResults().forEach(row -> ids.add(row.getLong(0)));
+        return ids;
+    }
+}
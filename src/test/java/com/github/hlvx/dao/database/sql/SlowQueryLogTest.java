@@ -0,0 +1,85 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.UpdateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlowQueryLogTest extends DatabaseTestBase {
+    private DaoManager manager;
+    private SlowQueryLog slowQueries;
+
+    public static class EventDao extends DAO {
+        public EventDao() {
+        }
+
+        void insert(Handler<AsyncResult<UpdateResult>> handler, int id) {
+            executeUpdate(handler, "INSERT INTO events (id) VALUES (?)", id);
+        }
+
+        void event(Handler<AsyncResult<ResultSet>> handler, int id) {
+            executeQuery(handler, "SELECT id FROM events WHERE id = ?", id);
+        }
+
+        void archived(Handler<AsyncResult<ResultSet>> handler, int id) {
+            executeQuery(handler, "SELECT id FROM archived_events WHERE id = ?", id);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JDBCClient primary = client("slow_query_log_primary");
+        JDBCClient replica = client("slow_query_log_replica");
+        execute(primary, "DROP TABLE events IF EXISTS", "CREATE TABLE events (id INT PRIMARY KEY)");
+        // Each table is only on one database, explaining its queries on the other one fails
+        execute(replica, "DROP TABLE archived_events IF EXISTS", "CREATE TABLE archived_events (id INT PRIMARY KEY)");
+        manager = new DaoManager(primary, Collections.singletonList(replica));
+        slowQueries = new SlowQueryLog(0, TimeUnit.MILLISECONDS, 10).setExplain("EXPLAIN PLAN FOR ", 1);
+        manager.setSlowQueryLog(slowQueries);
+    }
+
+    @Test
+    public void explainsQueriesOnTheDatabaseTheyRanOn() throws Exception {
+        EventDao dao = this.<EventDao>await(handler -> manager.createReadOnlyDao(EventDao.class, handler));
+        this.<ResultSet>await(handler -> dao.archived(handler, 1));
+        run(dao::close);
+
+        SlowQuery entry = slowQueries.getEntries(EventDao.class).get(0);
+        String plan = awaitPlan(entry);
+        assertFalse(plan.startsWith("EXPLAIN failed"), plan);
+        assertTrue(plan.contains("ARCHIVED_EVENTS"), plan);
+        assertEquals("(Integer)", entry.getParameters());
+    }
+
+    @Test
+    public void neverExplainsWrites() throws Exception {
+        EventDao dao = this.<EventDao>await(handler -> manager.createDao(EventDao.class, handler));
+        this.<UpdateResult>await(handler -> dao.insert(handler, 1));
+        this.<ResultSet>await(handler -> dao.event(handler, 1));
+        run(dao::close);
+
+        List<SlowQuery> entries = slowQueries.getEntries(EventDao.class);
+        assertEquals(2, entries.size());
+        // The query of a DAO that wrote runs on the primary, where it is explained
+        String plan = awaitPlan(entries.get(1));
+        assertFalse(plan.startsWith("EXPLAIN failed"), plan);
+        assertNull(entries.get(0).getPlan());
+    }
+
+    private static String awaitPlan(SlowQuery entry) throws InterruptedException {
+        for (int i = 0; i < 100 && entry.getPlan() == null; ++i) Thread.sleep(50);
+        return entry.getPlan();
+    }
+}
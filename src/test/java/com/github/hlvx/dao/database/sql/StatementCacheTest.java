@@ -0,0 +1,44 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StatementCacheTest extends DatabaseTestBase {
+    private DaoManager manager;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JDBCClient client = client("statement_cache", 1);
+        manager = new DaoManager(client);
+        manager.setStatementCacheEnabled(true);
+        execute(client, "DROP TABLE users IF EXISTS",
+                "CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(32))",
+                "INSERT INTO users VALUES (1, 'alice')");
+    }
+
+    @Test
+    public void reusesStatementsAcrossSessionsOfTheSameConnection() throws Exception {
+        assertEquals("[[\"alice\"]]", query().getResults().toString());
+        assertEquals(0, manager.getStatementCacheStats().getHits());
+        assertEquals(1, manager.getStatementCacheStats().getMisses());
+
+        // The pool holds a single connection, the second session gets the connection of the first one
+        assertEquals("[[\"alice\"]]", query().getResults().toString());
+        assertEquals(1, manager.getStatementCacheStats().getHits());
+        assertEquals(1, manager.getStatementCacheStats().getMisses());
+    }
+
+    private ResultSet query() throws Exception {
+        return this.<ResultSet>await(handler -> manager.createSession(sessionResult -> {
+            SQLSession session = sessionResult.result();
+            session.executeQuery(result -> {
+                session.close();
+                handler.handle(result);
+            }, "SELECT name FROM users WHERE id = ?", 1);
+        }));
+    }
+}
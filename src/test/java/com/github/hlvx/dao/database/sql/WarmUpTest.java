@@ -0,0 +1,93 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WarmUpTest extends DatabaseTestBase {
+    private static final String QUERY = "SELECT count(*) FROM users";
+    private JDBCClient client;
+    private DaoManager manager;
+    private InMemoryDaoMetrics metrics;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void count(Handler<AsyncResult<ResultSet>> handler) {
+            executeQuery(handler, QUERY);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        client = client("warm_up", 2);
+        manager = new DaoManager(client);
+        metrics = new InMemoryDaoMetrics();
+        manager.setMetrics(metrics);
+        manager.registerDao(UserDao.class);
+        execute(client, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id INT PRIMARY KEY)");
+    }
+
+    @Test
+    public void preparesConnectionsAndDaoInstances() throws Exception {
+        manager.setStatementCacheEnabled(true);
+        assertFalse(manager.isReady());
+        // The DAO instances are pooled per thread, so the DAOs are created on the context that ran the warm-up
+        List<UserDao> daos = this.<List<UserDao>>await(handler -> manager.createWarmUp()
+                .setConnections(2)
+                .setDaoInstances(3)
+                .addQuery(QUERY)
+                .run(warmed -> {
+                    if (warmed.failed()) {
+                        handler.handle(Future.failedFuture(warmed.cause()));
+                        return;
+                    }
+                    manager.createDao(UserDao.class, first -> manager.createDao(UserDao.class, second ->
+                            handler.handle(Future.succeededFuture(Arrays.asList(first.result(), second.result())))));
+                }));
+
+        assertTrue(manager.isReady());
+        assertEquals(2, manager.getStatementCacheStats().getMisses());
+
+        // The query is already prepared on both connections
+        for (UserDao dao : daos) this.<ResultSet>await(dao::count);
+        run(() -> daos.forEach(UserDao::close));
+        // Both DAOs were taken from the prefilled instances
+        assertEquals(3, metrics.getCreatedDaos(UserDao.class));
+        assertEquals(2, manager.getStatementCacheStats().getMisses());
+        assertEquals(2, manager.getStatementCacheStats().getHits());
+    }
+
+    @Test
+    public void failedQueryLeavesTheManagerNotReady() {
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> this.<Void>await(handler ->
+                manager.createWarmUp().addQuery("SELECT count(*) FROM missing").run(handler)));
+        assertTrue(failure.getCause().getMessage().contains("MISSING"), failure.getCause().getMessage());
+        assertFalse(manager.isReady());
+    }
+
+    @Test
+    public void warmsEveryShard() throws Exception {
+        JDBCClient other = client("warm_up_shard1");
+        execute(other, "DROP TABLE users IF EXISTS", "CREATE TABLE users (id INT PRIMARY KEY)");
+        DaoManager sharded = new DaoManager(Arrays.asList(client, other), new HashShardResolver());
+        this.<Void>await(handler -> sharded.createWarmUp().addQuery(QUERY).run(handler));
+        assertTrue(sharded.isReady());
+        assertTrue(sharded.getShard(0).isReady());
+        assertTrue(sharded.getShard(1).isReady());
+    }
+}
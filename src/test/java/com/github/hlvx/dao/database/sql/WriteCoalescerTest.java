@@ -0,0 +1,102 @@
+package com.github.hlvx.dao.database.sql;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.UpdateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteCoalescerTest extends DatabaseTestBase {
+    private JDBCClient client;
+    private DaoManager manager;
+
+    public static class UserDao extends DAO {
+        public UserDao() {
+        }
+
+        void insert(Handler<AsyncResult<UpdateResult>> handler, int id, String name) {
+            executeInsert(handler, "INSERT INTO users (id, name) VALUES (?, ?)", id, name);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        client = client("write_coalescer");
+        manager = new DaoManager(client);
+        manager.enableWriteCoalescing(UserDao.class, 50, TimeUnit.MILLISECONDS, 100);
+        execute(client, "DROP TABLE users IF EXISTS",
+                "CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(32))",
+                "INSERT INTO users VALUES (2, 'existing')");
+    }
+
+    @Test
+    public void failedBatchOnlyFailsTheFailingWrite() throws Exception {
+        List<AsyncResult<UpdateResult>> results = this.<List<AsyncResult<UpdateResult>>>await(handler -> {
+            List<Future> writes = new ArrayList<>();
+            for (int id = 1; id <= 3; ++id) {
+                int key = id;
+                Future<UpdateResult> write = Future.future();
+                writes.add(write);
+                manager.createDao(UserDao.class, dao -> dao.result().insert(result -> {
+                    dao.result().close();
+                    write.handle(result);
+                }, key, "user" + key));
+            }
+            CompositeFuture.join(writes).setHandler(joined -> {
+                List<AsyncResult<UpdateResult>> all = new ArrayList<>();
+                for (Future write : writes) all.add(write);
+                handler.handle(Future.succeededFuture(all));
+            });
+        });
+        // The duplicate key fails the batch, the other writes are replayed and committed
+        assertEquals(1, results.get(0).result().getUpdated());
+        assertTrue(results.get(1).failed());
+        assertEquals(1, results.get(2).result().getUpdated());
+        assertEquals(Arrays.asList("user1", "existing", "user3"), names());
+    }
+
+    @Test
+    public void writesOutsideOfAContextUseTheVertxOfTheManager() throws Exception {
+        UserDao dao = this.<UserDao>await(handler -> manager.createDao(UserDao.class, handler));
+        // The thread of the test has no Vert.x context to time the window on
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> insert(dao, 5));
+        assertEquals(IllegalStateException.class, failure.getCause().getClass());
+
+        manager.setVertx(vertx);
+        assertEquals(1, insert(dao, 5).getUpdated());
+        run(dao::close);
+        assertEquals(Arrays.asList("existing", "user5"), names());
+    }
+
+    private UpdateResult insert(UserDao dao, int id) throws Exception {
+        CompletableFuture<UpdateResult> future = new CompletableFuture<>();
+        dao.insert(result -> {
+            if (result.succeeded()) future.complete(result.result());
+            else future.completeExceptionally(result.cause());
+        }, id, "user" + id);
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    private List<String> names() throws Exception {
+        ResultSet resultSet = this.<ResultSet>await(handler ->
+                client.query("SELECT name FROM users ORDER BY id", handler));
+        List<String> names = new ArrayList<>();
+        resultSet.getResults().forEach(row -> names.add(row.getString(0)));
+        return names;
+    }
+}